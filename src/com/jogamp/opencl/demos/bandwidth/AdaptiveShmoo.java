@@ -0,0 +1,172 @@
+package com.jogamp.opencl.demos.bandwidth;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Shmoo over transfer sizes which places its points where the bandwidth changes.
+ * <p>
+ * A coarse pass measures every power of two, afterwards the interval with the largest
+ * significant bandwidth change (a knee) is split at its geometric center until the
+ * point budget is spent or no interval changes by more than {@link #KNEE_THRESHOLD}.
+ * Every point is measured in batches of {@link #BATCH_ITERATIONS} iterations until the 95%
+ * confidence interval of the batch means is narrower than {@link #CONFIDENCE} of the mean.
+ * </p>
+ */
+class AdaptiveShmoo {
+
+    static final int BATCH_ITERATIONS = 10;
+    static final int MIN_BATCHES = 3;
+    static final int MAX_BATCHES = 10;
+
+    // relative half width of the confidence interval
+    static final double CONFIDENCE = 0.02;
+
+    // relative bandwidth change of an interval worth refining
+    static final double KNEE_THRESHOLD = 0.05;
+
+    static final int MAX_POINTS = 64;
+    static final int GRANULARITY = 1 << 10;
+
+    // two sided 95% quantiles of the t distribution for 1..9 degrees of freedom
+    private static final double[] T_95 = {12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262};
+
+    interface Measurement {
+        TransferStatistics measure(int memSize, int iterations);
+    }
+
+    private final Measurement measurement;
+    private final TreeMap<Integer, Sample> samples = new TreeMap<Integer, Sample>();
+    private int iterations;
+
+    AdaptiveShmoo(Measurement measurement) {
+        this.measurement = measurement;
+    }
+
+    void run(int minSize, int maxSize) {
+
+        // coarse pass
+        for (long size = minSize; size <= maxSize; size <<= 1) {
+            sample((int)size);
+        }
+
+        // refine knees
+        Set<Integer> unsplittable = new HashSet<Integer>();
+        while(samples.size() < MAX_POINTS) {
+
+            int bestLower = -1;
+            double bestChange = Math.log(1 + KNEE_THRESHOLD);
+
+            Map.Entry<Integer, Sample> lower = null;
+            for (Map.Entry<Integer, Sample> upper : samples.entrySet()) {
+                if(lower != null && !unsplittable.contains(lower.getKey())) {
+                    Sample a = lower.getValue();
+                    Sample b = upper.getValue();
+                    // changes within the noise are no knees
+                    boolean significant = Math.abs(b.bandwidth - a.bandwidth) > a.halfWidth + b.halfWidth;
+                    double change = Math.abs(Math.log(b.bandwidth / a.bandwidth));
+                    if(significant && change > bestChange) {
+                        bestChange = change;
+                        bestLower = lower.getKey();
+                    }
+                }
+                lower = upper;
+            }
+
+            if(bestLower == -1) {
+                break;
+            }
+
+            int upperSize = samples.higherKey(bestLower);
+            int center = (int)Math.round(Math.sqrt((double)bestLower * upperSize) / GRANULARITY) * GRANULARITY;
+            if(center <= bestLower || center >= upperSize) {
+                unsplittable.add(bestLower);
+            }else{
+                sample(center);
+            }
+        }
+    }
+
+    private void sample(int memSize) {
+
+        List<TransferStatistics> batches = new ArrayList<TransferStatistics>();
+        double mean = 0;
+        double halfWidth = Double.MAX_VALUE;
+
+        while(batches.size() < MAX_BATCHES) {
+            batches.add(measurement.measure(memSize, BATCH_ITERATIONS));
+            iterations += BATCH_ITERATIONS;
+
+            int n = batches.size();
+            double sum = 0;
+            for (TransferStatistics batch : batches) {
+                sum += batch.getBandwidth();
+            }
+            mean = sum / n;
+
+            if(n < MIN_BATCHES) {
+                continue;
+            }
+
+            double variance = 0;
+            for (TransferStatistics batch : batches) {
+                variance += (batch.getBandwidth() - mean) * (batch.getBandwidth() - mean);
+            }
+            double stddev = Math.sqrt(variance / (n - 1));
+            halfWidth = tQuantile(n - 1) * stddev / Math.sqrt(n);
+
+            if(halfWidth < CONFIDENCE * mean) {
+                break;
+            }
+        }
+        samples.put(memSize, new Sample(mean, halfWidth, batches.get(batches.size() - 1), batches.size()));
+    }
+
+    private static double tQuantile(int degreesOfFreedom) {
+        return degreesOfFreedom <= T_95.length ? T_95[degreesOfFreedom - 1] : 1.96;
+    }
+
+    int[] getSizes() {
+        int[] sizes = new int[samples.size()];
+        int i = 0;
+        for (int size : samples.keySet()) {
+            sizes[i++] = size;
+        }
+        return sizes;
+    }
+
+    List<Sample> getSamples() {
+        return new ArrayList<Sample>(samples.values());
+    }
+
+    /**
+     * Total number of measured iterations.
+     */
+    int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * One point. Bandwidth is the mean of the batch means in MB/s, halfWidth the
+     * half width of its 95% confidence interval.
+     */
+    static class Sample {
+
+        final double bandwidth;
+        final double halfWidth;
+        final TransferStatistics lastBatch;
+        final int batches;
+
+        Sample(double bandwidth, double halfWidth, TransferStatistics lastBatch, int batches) {
+            this.bandwidth = bandwidth;
+            this.halfWidth = halfWidth;
+            this.lastBatch = lastBatch;
+            this.batches = batches;
+        }
+    }
+
+}
@@ -9,16 +9,36 @@ import com.jogamp.opencl.CLBuffer;
 import com.jogamp.opencl.CLCommandQueue;
 import com.jogamp.opencl.CLContext;
 import com.jogamp.opencl.CLDevice;
+import com.jogamp.opencl.CLEventList;
 import com.jogamp.opencl.CLPlatform;
+import com.jogamp.opencl.demos.benchmark.BenchmarkRunner;
 
 import static com.jogamp.opencl.CLMemory.Map.*;
 import com.jogamp.opencl.CLMemory.Mem;
 import static com.jogamp.opencl.CLMemory.Mem.*;
 
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.Buffer;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Port of Nvidia's BandwidthTest to JOCL HLB.
+ * <p>
+ * Every copy iteration is timed individually, direct transfers by their profiling events,
+ * mapped transfers by the host clock. Reported bandwidths are the mean after outlier rejection,
+ * see {@link TransferStatistics}. Host caches are flushed between iterations.
+ * </p>
+ * <p>
+ * <code>--numa=all</code> or <code>--numa=0,1</code> repeats the run once per NUMA node, see {@link NumaNodes}.
+ * <code>--benchmark</code> runs a {@link TransferWorkload} through the shared {@link BenchmarkRunner} instead.
+ * </p>
  * @author Michael Bien
  */
 public class BandwidthBenchmark {
@@ -28,6 +48,7 @@ public class BandwidthBenchmark {
     private static int DEFAULT_SIZE = (32 * (1 << 20));    //32 M
     private static int DEFAULT_INCREMENT = (1 << 22);     //4 M
     private static int CACHE_CLEAR_SIZE = (1 << 24);       //16 M
+    private static int PAGE_SIZE = (1 << 12);              //4 K, minimum alignment of ALIGNED and ZERO_COPY host memory
 
     //shmoo mode defines
     private static int SHMOO_MEMSIZE_MAX = (1 << 26);         //64 M
@@ -46,13 +67,32 @@ public class BandwidthBenchmark {
     private static int SHMOO_LIMIT_16MB = (1 << 24);         //16 MB
     private static int SHMOO_LIMIT_32MB = (1 << 25);         //32 MB
 
-    private enum TEST_MODE { QUICK, RANGE, SHMOO };
-    private enum COPY { DEVICE_TO_HOST, HOST_TO_DEVICE, DEVICE_TO_DEVICE };
-    private enum MEMORY { PAGEABLE, PINNED };
-    private enum ACCESS { MAPPED, DIRECT };
+    private static double DEFAULT_THRESHOLD = 5.0;          // % regression tolerated by --baseline
 
+    // host cache eviction between iterations, see flushCaches()
+    private static boolean cacheFlush = true;
+    private static ByteBuffer cacheClearSource;
+    private static ByteBuffer cacheClearTarget;
 
-    public static void main(String[] args) {
+    enum TEST_MODE { QUICK, RANGE, SHMOO, ADAPTIVE };
+    enum COPY { DEVICE_TO_HOST, HOST_TO_DEVICE, DEVICE_TO_DEVICE };
+    /**
+     * Host memory. PINNED is allocated by the runtime (ALLOC_HOST_PTR), ALIGNED is a direct buffer aligned
+     * to the device base address alignment and ZERO_COPY wraps such a buffer as device memory (USE_HOST_PTR).
+     * ZERO_COPY is measured with MAPPED access only, a DIRECT read or write would copy the buffer onto itself.
+     */
+    enum MEMORY { PAGEABLE, PINNED, ALIGNED, ZERO_COPY };
+    enum ACCESS { MAPPED, DIRECT };
+
+
+    public static void main(String[] args) throws IOException {
+
+        if(BenchmarkRunner.isRequested(args)) {
+            BenchmarkRunner runner = BenchmarkRunner.create(args);
+            runner.checkArgs();
+            runner.run(new TransferWorkload(runner.getSize(TransferWorkload.DEFAULT_SIZE)));
+            return;
+        }
 
         int start = DEFAULT_SIZE;
         int end = DEFAULT_SIZE;
@@ -60,7 +100,15 @@ public class BandwidthBenchmark {
 
         TEST_MODE mode = TEST_MODE.QUICK;
         MEMORY memMode = MEMORY.PAGEABLE;
-        ACCESS accMode = ACCESS.DIRECT;
+        ACCESS accMode = null;
+
+        BandwidthResults.FORMAT format = BandwidthResults.FORMAT.TEXT;
+        String outputFile = null;
+        String baselineFile = null;
+        double threshold = DEFAULT_THRESHOLD;
+        boolean concurrent = false;
+        boolean regions = false;
+        int[] numaNodes = null;
 
         CLPlatform[] platforms = CLPlatform.listCLPlatforms();
         CLPlatform platform = platforms[0];
@@ -87,94 +135,220 @@ public class BandwidthBenchmark {
                 mode = TEST_MODE.valueOf(arg.substring(7).toUpperCase());
             }else if(arg.startsWith("--platform=")) {
                 platform = platforms[Integer.parseInt(arg.substring(11))];
+            }else if(arg.startsWith("--output=")) {
+                format = BandwidthResults.FORMAT.valueOf(arg.substring(9).toUpperCase());
+            }else if(arg.startsWith("--file=")) {
+                outputFile = arg.substring(7);
+            }else if(arg.startsWith("--baseline=")) {
+                baselineFile = arg.substring(11);
+            }else if(arg.startsWith("--threshold=")) {
+                threshold = Double.parseDouble(arg.substring(12));
+            }else if(arg.equals("--concurrent")) {
+                concurrent = true;
+            }else if(arg.equals("--regions")) {
+                regions = true;
+            }else if(arg.equals("--no-cache-flush")) {
+                cacheFlush = false;
+            }else if(arg.startsWith("--numa=")) {
+                numaNodes = NumaNodes.parse(arg.substring(7));
             }else{
                 System.out.println("unknown arg: "+arg);
                 System.exit(1);
             }
         }
+        if(memMode == MEMORY.ZERO_COPY) {
+            if(accMode == ACCESS.DIRECT) {
+                System.out.println("zero copy memory supports mapped access only");
+                System.exit(1);
+            }
+            accMode = ACCESS.MAPPED;
+        }else if(accMode == null) {
+            accMode = ACCESS.DIRECT;
+        }
+        if(concurrent && memMode != MEMORY.PAGEABLE && memMode != MEMORY.PINNED) {
+            System.out.println("the concurrent test supports pageable and pinned memory only");
+            System.exit(1);
+        }
+        if((memMode == MEMORY.ALIGNED || memMode == MEMORY.ZERO_COPY) && !isAlignmentSupported()) {
+            System.out.println("aligned and zero copy memory are not supported by this JVM");
+            System.exit(1);
+        }
+        if(regions && memMode != MEMORY.PAGEABLE) {
+            System.out.println("the region test supports pageable memory only");
+            System.exit(1);
+        }
         if(deviceIndex != -1) {
             device = platform.listCLDevices()[deviceIndex];
         }
 
-        CLContext context = CLContext.create(device);
+        BandwidthResults results;
+
+        if(numaNodes != null) {
+            // every node runs in its own process, bound to the node's cpus and memory
+            results = new BandwidthResults(platform.getName(), device.getName());
+            List<List<BandwidthResults.Point>> perNode = new ArrayList<List<BandwidthResults.Point>>();
+            for (int node : numaNodes) {
+                System.out.println("NUMA node "+node);
+                List<BandwidthResults.Point> points = NumaNodes.runOnNode(node, args);
+                for (BandwidthResults.Point point : points) {
+                    if(NumaNodes.involvesHost(point)) {
+                        results.add(point.copy, point.access, point.memory+"@NODE"+node, point.size, point.bandwidth, null);
+                    }else if(perNode.isEmpty()) {
+                        // device to device copies do not depend on the node, recorded once
+                        results.add(point.copy, point.access, point.memory, point.size, point.bandwidth, null);
+                    }
+                }
+                perNode.add(points);
+            }
+            NumaNodes.printSummary(numaNodes, perNode, System.out);
+        }else{
+            // the concurrent test uses all devices of the platform
+            CLContext context;
+            if(concurrent) {
+                context = CLContext.create(platform.listCLDevices());
+            }else{
+                context = CLContext.create(device);
+            }
+
+            System.out.println();
+            System.out.println(platform);
+            System.out.println(context);
+            System.out.println();
 
-        System.out.println();
-        System.out.println(platform);
-        System.out.println(context);
-        System.out.println();
+            results = new BandwidthResults(platform.getName(), concurrent ? "all" : device.getName());
+
+            // Run tests
+            if(concurrent) {
+                ConcurrentTransferTest test = new ConcurrentTransferTest(context, DEFAULT_SIZE, memMode);
+                try{
+                    test.run(results);
+                }finally{
+                    test.release();
+                }
+            }else if(regions) {
+                testRegions(context, DEFAULT_SIZE, COPY.HOST_TO_DEVICE, results);
+                testRegions(context, DEFAULT_SIZE, COPY.DEVICE_TO_HOST, results);
+            }else{
+                testBandwidth(context, start, end, increment, mode, COPY.HOST_TO_DEVICE, accMode, memMode, results);
+                testBandwidth(context, start, end, increment, mode, COPY.DEVICE_TO_HOST, accMode, memMode, results);
+                testBandwidth(context, start, end, increment, mode, COPY.DEVICE_TO_DEVICE, accMode, memMode, results);
+            }
 
-        // Run tests
-        testBandwidth(context, start, end, increment, mode, COPY.HOST_TO_DEVICE, accMode, memMode);
-        testBandwidth(context, start, end, increment, mode, COPY.DEVICE_TO_HOST, accMode, memMode);
-        testBandwidth(context, start, end, increment, mode, COPY.DEVICE_TO_DEVICE, accMode, memMode);
+            context.release();
+        }
+
+        // machine readable output
+        if(format != BandwidthResults.FORMAT.TEXT) {
+            if(outputFile != null) {
+                PrintStream stream = new PrintStream(new FileOutputStream(outputFile));
+                try{
+                    results.write(stream, format);
+                }finally{
+                    stream.close();
+                }
+            }else{
+                results.write(System.out, format);
+            }
+        }
 
-        context.release();
+        // automated pass/fail against a stored run
+        if(baselineFile != null) {
+            List<BandwidthResults.Point> baseline = BandwidthResults.load(baselineFile);
+            int regressions = results.compare(baseline, threshold, System.out);
+            if(regressions > 0) {
+                System.exit(2);
+            }
+        }
     }
 
-    private static void testBandwidth(CLContext context, int start, int end, int increment, TEST_MODE mode, COPY kind, ACCESS accMode, MEMORY memMode) {
+    private static void testBandwidth(CLContext context, int start, int end, int increment, TEST_MODE mode, COPY kind, ACCESS accMode, MEMORY memMode, BandwidthResults results) {
         switch (mode) {
             case QUICK:
-                testBandwidthQuick(context, DEFAULT_SIZE, kind, accMode, memMode);
+                testBandwidthQuick(context, DEFAULT_SIZE, kind, accMode, memMode, results);
                 break;
             case RANGE:
-                testBandwidthRange(context, start, end, increment, kind, accMode, memMode);
+                testBandwidthRange(context, start, end, increment, kind, accMode, memMode, results);
                 break;
             case SHMOO:
-                testBandwidthShmoo(context, kind, accMode, memMode);
+                testBandwidthShmoo(context, kind, accMode, memMode, results);
+                break;
+            case ADAPTIVE:
+                testBandwidthAdaptive(context, kind, accMode, memMode, results);
                 break;
             default:
                 break;
         }
     }
 
+    /**
+     * Run the sub-region, rectangular and batching tests
+     */
+    private static void testRegions(CLContext context, int size, COPY kind, BandwidthResults results) {
+        for (CLDevice device : context.getDevices()) {
+            CLCommandQueue queue = device.createCommandQueue();
+            RegionTransferTest test = new RegionTransferTest(queue, size, kind);
+            try{
+                test.run(results);
+            }finally{
+                test.release();
+                queue.release();
+            }
+        }
+    }
+
     /**
      * Run a quick mode bandwidth test
      */
-    private static void testBandwidthQuick(CLContext context, int size, COPY kind, ACCESS accMode, MEMORY memMode) {
-        testBandwidthRange(context, size, size, DEFAULT_INCREMENT, kind, accMode, memMode);
+    private static void testBandwidthQuick(CLContext context, int size, COPY kind, ACCESS accMode, MEMORY memMode, BandwidthResults results) {
+        testBandwidthRange(context, size, size, DEFAULT_INCREMENT, kind, accMode, memMode, results);
     }
 
     /**
      * Run a range mode bandwidth test
      */
-    private static void testBandwidthRange(CLContext context, int start, int end, int increment, COPY kind, ACCESS accMode, MEMORY memMode) {
+    private static void testBandwidthRange(CLContext context, int start, int end, int increment, COPY kind, ACCESS accMode, MEMORY memMode, BandwidthResults results) {
         //count the number of copies we're going to run
         int count = 1 + ((end - start) / increment);
 
         int[] memSizes = new int[count];
         double[] bandwidths = new double[count];
+        TransferStatistics[] statistics = new TransferStatistics[count];
 
         // Use the device asked by the user
         CLDevice[] devices = context.getDevices();
         for (CLDevice device : devices) {
-            CLCommandQueue queue = device.createCommandQueue();
+            CLCommandQueue queue = device.createCommandQueue(CLCommandQueue.Mode.PROFILING_MODE);
 
             //run each of the copies
             for (int i = 0; i < count; i++) {
                 memSizes[i] = start + i * increment;
                 switch (kind) {
                     case DEVICE_TO_HOST:
-                        bandwidths[i] += testDeviceToHostTransfer(queue, memSizes[i], accMode, memMode);
+                        statistics[i] = testDeviceToHostTransfer(queue, memSizes[i], MEMCOPY_ITERATIONS, accMode, memMode);
                         break;
                     case HOST_TO_DEVICE:
-                        bandwidths[i] += testHostToDeviceTransfer(queue, memSizes[i], accMode, memMode);
+                        statistics[i] = testHostToDeviceTransfer(queue, memSizes[i], MEMCOPY_ITERATIONS, accMode, memMode);
                         break;
                     case DEVICE_TO_DEVICE:
-                        bandwidths[i] += testDeviceToDeviceTransfer(queue, memSizes[i]);
+                        statistics[i] = testDeviceToDeviceTransfer(queue, memSizes[i], MEMCOPY_ITERATIONS);
                         break;
                 }
+                bandwidths[i] += statistics[i].getBandwidth();
             }
             queue.release();
         }
 
         //print results
-        printResultsReadable(memSizes, bandwidths, count, kind, accMode, memMode, count);
+        printResultsReadable(memSizes, bandwidths, statistics, count, kind, accMode, memMode, count);
+        for (int i = 0; i < count; i++) {
+            results.add(kind, accMode, memMode, memSizes[i], bandwidths[i], statistics[i]);
+        }
     }
 
     /**
      *  Intense shmoo mode - covers a large range of values with varying increments
      */
-    private static void testBandwidthShmoo(CLContext context, COPY kind, ACCESS accMode, MEMORY memMode) {
+    private static void testBandwidthShmoo(CLContext context, COPY kind, ACCESS accMode, MEMORY memMode, BandwidthResults results) {
 
         //count the number of copies to make
         int count = 1 + (SHMOO_LIMIT_20KB / SHMOO_INCREMENT_1KB)
@@ -187,12 +361,13 @@ public class BandwidthBenchmark {
 
         int[] memSizes = new int[count];
         double[] bandwidths = new double[count];
+        TransferStatistics[] statistics = new TransferStatistics[count];
 
         // Use the device asked by the user
         CLDevice[] devices = context.getDevices();
         for (CLDevice device : devices) {
             // Allocate command queue for the device
-            CLCommandQueue queue = device.createCommandQueue();
+            CLCommandQueue queue = device.createCommandQueue(CLCommandQueue.Mode.PROFILING_MODE);
 
             //Run the shmoo
             int iteration = 0;
@@ -217,29 +392,82 @@ public class BandwidthBenchmark {
                 memSizes[iteration] = memSize;
                 switch (kind) {
                     case DEVICE_TO_HOST:
-                        bandwidths[iteration] += testDeviceToHostTransfer(queue, memSizes[iteration], accMode, memMode);
+                        statistics[iteration] = testDeviceToHostTransfer(queue, memSizes[iteration], MEMCOPY_ITERATIONS, accMode, memMode);
                         break;
                     case HOST_TO_DEVICE:
-                        bandwidths[iteration] += testHostToDeviceTransfer(queue, memSizes[iteration], accMode, memMode);
+                        statistics[iteration] = testHostToDeviceTransfer(queue, memSizes[iteration], MEMCOPY_ITERATIONS, accMode, memMode);
                         break;
                     case DEVICE_TO_DEVICE:
-                        bandwidths[iteration] += testDeviceToDeviceTransfer(queue, memSizes[iteration]);
+                        statistics[iteration] = testDeviceToDeviceTransfer(queue, memSizes[iteration], MEMCOPY_ITERATIONS);
                         break;
                 }
+                bandwidths[iteration] += statistics[iteration].getBandwidth();
                 iteration++;
             }
             queue.release();
         }
 
         //print results
-        printResultsReadable(memSizes, bandwidths, count, kind, accMode, memMode, count);
+        printResultsReadable(memSizes, bandwidths, statistics, count, kind, accMode, memMode, count);
+        for (int i = 0; i < count; i++) {
+            results.add(kind, accMode, memMode, memSizes[i], bandwidths[i], statistics[i]);
+        }
 
     }
 
+    /**
+     *  Adaptive shmoo mode - same range as shmoo mode, points are concentrated at bandwidth knees
+     */
+    private static void testBandwidthAdaptive(CLContext context, final COPY kind, final ACCESS accMode, final MEMORY memMode, BandwidthResults results) {
+
+        for (CLDevice device : context.getDevices()) {
+            final CLCommandQueue queue = device.createCommandQueue(CLCommandQueue.Mode.PROFILING_MODE);
+
+            long time = System.nanoTime();
+            AdaptiveShmoo shmoo = new AdaptiveShmoo(new AdaptiveShmoo.Measurement() {
+                public TransferStatistics measure(int memSize, int iterations) {
+                    switch (kind) {
+                        case DEVICE_TO_HOST:
+                            return testDeviceToHostTransfer(queue, memSize, iterations, accMode, memMode);
+                        case HOST_TO_DEVICE:
+                            return testHostToDeviceTransfer(queue, memSize, iterations, accMode, memMode);
+                        default:
+                            return testDeviceToDeviceTransfer(queue, memSize, iterations);
+                    }
+                }
+            });
+            shmoo.run(SHMOO_MEMSIZE_START, SHMOO_MEMSIZE_MAX);
+            time = System.nanoTime() - time;
+            queue.release();
+
+            int[] memSizes = shmoo.getSizes();
+            List<AdaptiveShmoo.Sample> samples = shmoo.getSamples();
+            int count = memSizes.length;
+
+            double[] bandwidths = new double[count];
+            TransferStatistics[] statistics = new TransferStatistics[count];
+            for (int i = 0; i < count; i++) {
+                bandwidths[i] = samples.get(i).bandwidth;
+                statistics[i] = samples.get(i).lastBatch;
+            }
+
+            //print results, latency columns are of the last batch
+            printResultsReadable(memSizes, bandwidths, statistics, count, kind, accMode, memMode, count);
+            System.out.printf("   %d points, %d iterations, %.1f s\n\n", count, shmoo.getIterations(), time / 1000000000.0);
+            for (int i = 0; i < count; i++) {
+                results.add(kind, accMode, memMode, memSizes[i], bandwidths[i], statistics[i]);
+            }
+        }
+    }
+
     /**
      *  test the bandwidth of a device to host memcopy of a specific size
      */
-    private static double testDeviceToHostTransfer(CLCommandQueue queue, int memSize, ACCESS accMode, MEMORY memMode) {
+    private static TransferStatistics testDeviceToHostTransfer(CLCommandQueue queue, int memSize, int iterations, ACCESS accMode, MEMORY memMode) {
+
+        if (memMode == memMode.ZERO_COPY && accMode == accMode.DIRECT) {
+            throw new IllegalArgumentException("zero copy memory supports mapped access only");
+        }
 
         ByteBuffer h_data = null;
         CLBuffer<?> cmPinnedData = null;
@@ -258,14 +486,24 @@ public class BandwidthBenchmark {
 
             // unmap and make data in the host buffer valid
             queue.putUnmapMemory(cmPinnedData, h_data);
-        } else { // PAGED
+        } else if (memMode == memMode.PAGEABLE) {
             // standard host alloc
             h_data = Buffers.newDirectByteBuffer(memSize);
             fill(h_data);
+        } else { // ALIGNED, ZERO_COPY
+            h_data = newAlignedBuffer(queue.getDevice(), memSize);
+            fill(h_data);
         }
 
-        // allocate device memory
-        cmDevData = context.createBuffer(memSize, Mem.READ_WRITE);
+        // allocate device memory, backed by the host memory for zero copy.
+        // The mapped copies then go to a separate buffer, not onto the backing memory itself
+        if (memMode == memMode.ZERO_COPY) {
+            cmDevData = context.createBuffer(h_data, Mem.READ_WRITE, Mem.USE_BUFFER);
+            h_data = Buffers.newDirectByteBuffer(memSize);
+            fill(h_data);
+        } else {
+            cmDevData = context.createBuffer(memSize, Mem.READ_WRITE);
+        }
 
         // initialize device memory
         if (memMode == memMode.PINNED) {
@@ -274,36 +512,48 @@ public class BandwidthBenchmark {
 
             cmDevData = cmDevData.cloneWith(h_data);
             queue.putWriteBuffer(cmDevData, false);
-        } else { // PAGED
+        } else {
             cmDevData = cmDevData.cloneWith(h_data);
             queue.putWriteBuffer(cmDevData, false);
         }
 
-        // Sync queue to host, start timer 0, and copy data from GPU to Host
+        // Sync queue to host and copy data from GPU to Host
         queue.finish();
-        
-        long delta = System.nanoTime();
+
+        TransferStatistics statistics;
 
         if (accMode == accMode.DIRECT) {
-            // DIRECT:  API access to device buffer
+            // DIRECT:  API access to device buffer, timed by the profiling events
+            CLEventList events = new CLEventList(iterations);
             cmDevData = cmDevData.cloneWith(h_data);
-            for (int i = 0; i < MEMCOPY_ITERATIONS; i++) {
-                queue.putReadBuffer(cmDevData, false);
+            for (int i = 0; i < iterations; i++) {
+                flushCaches(queue);
+                queue.putReadBuffer(cmDevData, false, events);
             }
             queue.finish();
+            statistics = TransferStatistics.fromEvents(events, memSize);
+            events.release();
         } else {
             // MAPPED: mapped pointers to device buffer for conventional pointer access
-            ByteBuffer dm_idata = queue.putMapBuffer(cmDevData, WRITE, true);
-            for (int i = 0; i < MEMCOPY_ITERATIONS; i++) {
+            // map and unmap are timed by their events, the copy by the host clock
+            long[] durations = new long[iterations];
+            CLEventList mapEvents = new CLEventList(iterations);
+            CLEventList unmapEvents = new CLEventList(iterations);
+            for (int i = 0; i < iterations; i++) {
+                flushCaches(queue);
+                ByteBuffer dm_idata = queue.putMapBuffer(cmDevData, READ, true, mapEvents);
+                long time = System.nanoTime();
                 h_data.put(dm_idata).rewind();
-                dm_idata.rewind();
+                durations[i] = System.nanoTime() - time;
+                queue.putUnmapMemory(cmDevData, dm_idata, unmapEvents);
             }
-            queue.putUnmapMemory(cmDevData, dm_idata);
+            queue.finish();
+            statistics = new TransferStatistics(durations, memSize);
+            statistics.setMappingCosts(TransferStatistics.fromEvents(mapEvents, memSize), TransferStatistics.fromEvents(unmapEvents, memSize));
+            mapEvents.release();
+            unmapEvents.release();
         }
 
-        //get the the elapsed time in seconds
-        delta = System.nanoTime() - delta;
-
         //clean up memory
         cmDevData.release();
 
@@ -312,15 +562,17 @@ public class BandwidthBenchmark {
             cmPinnedData.release();
         }
 
-        //calculate bandwidth in MB/s
-        double elapsedTime = delta/1000000000.0;
-        return ((double) memSize * (double) MEMCOPY_ITERATIONS) / (elapsedTime*(double)(1 << 20));
+        return statistics;
     }
 
     /**
      *  test the bandwidth of a device to host memcopy of a specific size
      */
-    private static double testHostToDeviceTransfer(CLCommandQueue queue, int memSize, ACCESS accMode, MEMORY memMode) {
+    private static TransferStatistics testHostToDeviceTransfer(CLCommandQueue queue, int memSize, int iterations, ACCESS accMode, MEMORY memMode) {
+
+        if (memMode == memMode.ZERO_COPY && accMode == accMode.DIRECT) {
+            throw new IllegalArgumentException("zero copy memory supports mapped access only");
+        }
 
         ByteBuffer h_data;
         CLBuffer<?> cmPinnedData = null;
@@ -341,64 +593,84 @@ public class BandwidthBenchmark {
 
             // unmap and make data in the host buffer valid
             queue.putUnmapMemory(cmPinnedData, h_data);
-        } else { // PAGED
+        } else if (memMode == memMode.PAGEABLE) {
             // standard host alloc
             h_data = Buffers.newDirectByteBuffer(memSize);
             fill(h_data);
+        } else { // ALIGNED, ZERO_COPY
+            h_data = newAlignedBuffer(queue.getDevice(), memSize);
+            fill(h_data);
         }
 
-        // allocate device memory
-        cmDevData = context.createBuffer(memSize, Mem.READ_WRITE);
+        // allocate device memory, backed by the host memory for zero copy.
+        // The mapped copies then go to a separate buffer, not onto the backing memory itself
+        if (memMode == memMode.ZERO_COPY) {
+            cmDevData = context.createBuffer(h_data, Mem.READ_WRITE, Mem.USE_BUFFER);
+            h_data = Buffers.newDirectByteBuffer(memSize);
+            fill(h_data);
+        } else {
+            cmDevData = context.createBuffer(memSize, Mem.READ_WRITE);
+        }
 
-        // Sync queue to host, start timer 0, and copy data from Host to GPU
+        // Sync queue to host and copy data from Host to GPU
         queue.finish();
 
-        long delta = System.nanoTime();
+        TransferStatistics statistics;
 
-        if (accMode == accMode.DIRECT) {
-            if (memMode == memMode.PINNED) {
-                // Get a mapped pointer
-                h_data = queue.putMapBuffer(cmPinnedData, WRITE, true);
-            }
+        if (memMode == memMode.PINNED) {
+            // Get a mapped pointer
+            h_data = queue.putMapBuffer(cmPinnedData, WRITE, true);
+        }
 
-            // DIRECT:  API access to device buffer
+        if (accMode == accMode.DIRECT) {
+            // DIRECT:  API access to device buffer, timed by the profiling events
+            CLEventList events = new CLEventList(iterations);
             cmDevData = cmDevData.cloneWith(h_data);
-            for (int i = 0; i < MEMCOPY_ITERATIONS; i++) {
-                queue.putWriteBuffer(cmDevData, false);
+            for (int i = 0; i < iterations; i++) {
+                flushCaches(queue);
+                queue.putWriteBuffer(cmDevData, false, events);
             }
             queue.finish();
+            statistics = TransferStatistics.fromEvents(events, memSize);
+            events.release();
         } else {
 
             // MAPPED: mapped pointers to device buffer and conventional pointer access
-            ByteBuffer dm_idata = queue.putMapBuffer(cmDevData, READ, true);
-            for (int i = 0; i < MEMCOPY_ITERATIONS; i++) {
-                dm_idata.put(h_data).rewind();
+            // map and unmap are timed by their events, the copy by the host clock
+            long[] durations = new long[iterations];
+            CLEventList mapEvents = new CLEventList(iterations);
+            CLEventList unmapEvents = new CLEventList(iterations);
+            for (int i = 0; i < iterations; i++) {
+                flushCaches(queue);
+                ByteBuffer dm_idata = queue.putMapBuffer(cmDevData, WRITE, true, mapEvents);
+                long time = System.nanoTime();
+                dm_idata.put(h_data);
                 h_data.rewind();
+                durations[i] = System.nanoTime() - time;
+                queue.putUnmapMemory(cmDevData, dm_idata, unmapEvents);
             }
-            queue.putUnmapMemory(cmDevData, dm_idata);
+            queue.finish();
+            statistics = new TransferStatistics(durations, memSize);
+            statistics.setMappingCosts(TransferStatistics.fromEvents(mapEvents, memSize), TransferStatistics.fromEvents(unmapEvents, memSize));
+            mapEvents.release();
+            unmapEvents.release();
         }
 
-        //get the the elapsed time in ms
-        delta = System.nanoTime() - delta;
-
         //clean up memory
         cmDevData.release();
 
         if (cmPinnedData != null) {
-//            cmPinnedData = cmPinnedData.cloneWith(h_data);
-//            queue.putUnmapMemory(cmPinnedData);
+            queue.putUnmapMemory(cmPinnedData, h_data);
             cmPinnedData.release();
         }
 
-        //calculate bandwidth in MB/s
-        double elapsedTime = delta/1000000000.0;
-        return ((double) memSize * (double) MEMCOPY_ITERATIONS) / (elapsedTime*(double)(1 << 20));
+        return statistics;
     }
 
     /**
      *  test the bandwidth of a device to host memcopy of a specific size
      */
-    private static double testDeviceToDeviceTransfer(CLCommandQueue queue, int memSize) {
+    private static TransferStatistics testDeviceToDeviceTransfer(CLCommandQueue queue, int memSize, int iterations) {
 
         CLContext context = queue.getContext();
 
@@ -413,30 +685,91 @@ public class BandwidthBenchmark {
         d_idata = d_idata.cloneWith(h_idata);
         queue.putWriteBuffer(d_idata, true);
 
-        // Sync queue to host, start timer 0, and copy data from one GPU buffer to another GPU bufffer
+        // Sync queue to host and copy data from one GPU buffer to another GPU bufffer
         queue.finish();
 
-        long delta = System.nanoTime();
-
-        for (int i = 0; i < MEMCOPY_ITERATIONS; i++) {
-            queue.putCopyBuffer(d_idata, d_odata);
+        CLEventList events = new CLEventList(iterations);
+        for (int i = 0; i < iterations; i++) {
+            queue.putCopyBuffer(d_idata, d_odata, events);
         }
 
         // Sync with GPU
         queue.finish();
 
-        //get the the elapsed time in ms
-        delta = System.nanoTime() - delta;
+        // Bandwidth is computed for kernels that read and write GMEM simultaneously
+        // Obtained Throughput for unidirectional block copies will be 1/2 of this #
+        TransferStatistics statistics = TransferStatistics.fromEvents(events, 2.0 * memSize);
+        events.release();
 
         //clean up memory on host and device
         d_idata.release();
         d_odata.release();
 
-        // Calculate bandwidth in MB/s
-        //      This is for kernels that read and write GMEM simultaneously
-        //      Obtained Throughput for unidirectional block copies will be 1/2 of this #
-        double elapsedTime = delta/1000000000.0;
-        return 2.0 * ((double) memSize * (double) MEMCOPY_ITERATIONS) / (elapsedTime*(double)(1 << 20));
+        return statistics;
+    }
+
+    /**
+     * Evicts the transfer buffers from the host caches before the next iteration, otherwise small
+     * transfers are served from cache. Waits for the previous iteration, then copies
+     * CACHE_CLEAR_SIZE bytes between two unrelated buffers. Disabled with --no-cache-flush.
+     */
+    private static void flushCaches(CLCommandQueue queue) {
+        if (!cacheFlush) {
+            return;
+        }
+        if (cacheClearSource == null) {
+            cacheClearSource = Buffers.newDirectByteBuffer(CACHE_CLEAR_SIZE);
+            cacheClearTarget = Buffers.newDirectByteBuffer(CACHE_CLEAR_SIZE);
+            fill(cacheClearSource);
+        }
+        queue.finish();
+        cacheClearTarget.put(cacheClearSource);
+        cacheClearTarget.rewind();
+        cacheClearSource.rewind();
+    }
+
+    /**
+     * Allocates a direct buffer aligned to the device base address alignment, but at least to a page.
+     */
+    private static ByteBuffer newAlignedBuffer(CLDevice device, int memSize) {
+        int alignment = Math.max(PAGE_SIZE, device.getMemBaseAddrAlign() / 8);
+        ByteBuffer buffer = alignedSlice(ByteBuffer.allocateDirect(memSize + alignment), alignment);
+        if(buffer == null) {
+            throw new UnsupportedOperationException("aligned host memory is not supported by this JVM");
+        }
+        buffer.limit(memSize);
+        return buffer.slice().order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Returns true if the JVM can align direct buffers, required by ALIGNED and ZERO_COPY memory.
+     */
+    private static boolean isAlignmentSupported() {
+        return alignedSlice(ByteBuffer.allocateDirect(2 * PAGE_SIZE), PAGE_SIZE) != null;
+    }
+
+    /**
+     * The aligned part of a direct buffer or null if the JVM offers no way to align it.
+     * Uses ByteBuffer.alignedSlice on Java 9 and later, the private address field on Java 8.
+     */
+    private static ByteBuffer alignedSlice(ByteBuffer buffer, int alignment) {
+        try{
+            Method alignedSlice = ByteBuffer.class.getMethod("alignedSlice", int.class);
+            return (ByteBuffer) alignedSlice.invoke(buffer, alignment);
+        }catch(NoSuchMethodException ex) {
+            // Java 8, fall through
+        }catch(Exception ex) {
+            return null;
+        }
+        try{
+            Field field = Buffer.class.getDeclaredField("address");
+            field.setAccessible(true);
+            long address = field.getLong(buffer);
+            buffer.position((int)((alignment - address % alignment) % alignment));
+            return buffer.slice();
+        }catch(Exception ex) {
+            return null;
+        }
     }
 
     private static void fill(ByteBuffer buffer) {
@@ -450,7 +783,7 @@ public class BandwidthBenchmark {
     /**
      * print results in an easily read format
      */
-    private static void printResultsReadable(int[] memSizes, double[] bandwidths, int count, COPY kind, ACCESS accMode, MEMORY memMode, int iNumDevs) {
+    private static void printResultsReadable(int[] memSizes, double[] bandwidths, TransferStatistics[] statistics, int count, COPY kind, ACCESS accMode, MEMORY memMode, int iNumDevs) {
         // log config information
         if (kind == COPY.DEVICE_TO_DEVICE) {
             System.out.print("Device to Device Bandwidth, "+iNumDevs+" Device(s), ");
@@ -464,6 +797,10 @@ public class BandwidthBenchmark {
                 System.out.print("Paged memory");
             } else if (memMode == memMode.PINNED) {
                 System.out.print("Pinned memory");
+            } else if (memMode == memMode.ALIGNED) {
+                System.out.print("Aligned memory");
+            } else if (memMode == memMode.ZERO_COPY) {
+                System.out.print("Zero copy memory");
             }
             if (accMode == accMode.DIRECT) {
                 System.out.println(", direct access");
@@ -473,12 +810,21 @@ public class BandwidthBenchmark {
         }
         System.out.println();
 
-        System.out.println("   Transfer Size (Bytes)\tBandwidth(MB/s)\n");
-        int i;
-        for (i = 0; i < (count - 1); i++) {
-            System.out.printf("   %s\t\t\t%s%.1f\n", memSizes[i], (memSizes[i] < 10000) ? "\t" : "", bandwidths[i]);
+        // copy bandwidth, map and unmap are listed separately
+        boolean mapped = kind != COPY.DEVICE_TO_DEVICE && accMode == ACCESS.MAPPED;
+
+        System.out.println("   Transfer Size (Bytes)\tBandwidth(MB/s)\tmin(us)\t\tmedian(us)\tp95(us)\t\tstddev(us)\toutliers"
+                + (mapped ? "\tmap(us)\t\tunmap(us)" : "")+"\n");
+        for (int i = 0; i < count; i++) {
+            TransferStatistics s = statistics[i];
+            System.out.printf("   %s\t\t\t%s%.1f\t\t%.1f\t\t%.1f\t\t%.1f\t\t%.1f\t\t%d/%d", memSizes[i], (memSizes[i] < 10000) ? "\t" : "",
+                    bandwidths[i], s.min, s.median, s.p95, s.stddev, s.outliers, s.samples);
+            if (mapped) {
+                System.out.printf("\t\t%.1f\t\t%.1f", s.map.median, s.unmap.median);
+            }
+            System.out.println();
         }
-        System.out.printf("   %s\t\t\t%s%.1f\n\n", memSizes[i], (memSizes[i] < 10000) ? "\t" : "", bandwidths[i]);
+        System.out.println();
     }
 
 }
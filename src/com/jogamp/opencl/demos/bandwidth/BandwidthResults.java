@@ -0,0 +1,263 @@
+package com.jogamp.opencl.demos.bandwidth;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Collects every measured (copy, access, memory, size) point of a {@link BandwidthBenchmark} run.
+ * Results can be written as JSON or CSV and compared against a stored baseline in either format.
+ * Baselines are compared by mean bandwidth, the per transfer latency statistics are informational.
+ */
+public class BandwidthResults {
+
+    enum FORMAT { TEXT, JSON, CSV };
+
+    private static final String CSV_HEADER = "copy,access,memory,size,bandwidth";
+    private static final String CSV_STATISTICS = "min_us,median_us,p95_us,stddev_us,outliers,samples,map_us,unmap_us";
+
+    private final String platform;
+    private final String device;
+    private final List<Point> points = new ArrayList<Point>();
+
+    BandwidthResults(String platform, String device) {
+        this.platform = platform;
+        this.device = device;
+    }
+
+    void add(BandwidthBenchmark.COPY kind, BandwidthBenchmark.ACCESS accMode, BandwidthBenchmark.MEMORY memMode, int size, double bandwidth, TransferStatistics statistics) {
+        // access and memory mode do not apply to device to device copies
+        if(kind == BandwidthBenchmark.COPY.DEVICE_TO_DEVICE) {
+            points.add(new Point(kind.name(), "-", "-", size, bandwidth, statistics));
+        }else{
+            points.add(new Point(kind.name(), accMode.name(), memMode.name(), size, bandwidth, statistics));
+        }
+    }
+
+    /**
+     * Adds a point of a test which does not fit into the (copy, access, memory) scheme of the regular tests.
+     */
+    void add(String copy, String access, String memory, int size, double bandwidth, TransferStatistics statistics) {
+        points.add(new Point(copy, access, memory, size, bandwidth, statistics));
+    }
+
+    List<Point> getPoints() {
+        return points;
+    }
+
+    void write(PrintStream out, FORMAT format) {
+        switch (format) {
+            case JSON:
+                writeJSON(out);
+                break;
+            case CSV:
+                writeCSV(out);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void writeJSON(PrintStream out) {
+        out.println("{");
+        out.println("  \"platform\": \""+escape(platform)+"\",");
+        out.println("  \"device\": \""+escape(device)+"\",");
+        out.println("  \"results\": [");
+        for (int i = 0; i < points.size(); i++) {
+            Point point = points.get(i);
+            out.printf(Locale.ROOT, "    {\"copy\": \"%s\", \"access\": \"%s\", \"memory\": \"%s\", \"size\": %d, \"bandwidth\": %.3f",
+                    point.copy, point.access, point.memory, point.size, point.bandwidth);
+            TransferStatistics s = point.statistics;
+            if(s != null) {
+                out.printf(Locale.ROOT, ", \"min_us\": %.3f, \"median_us\": %.3f, \"p95_us\": %.3f, \"stddev_us\": %.3f, \"outliers\": %d, \"samples\": %d",
+                        s.min, s.median, s.p95, s.stddev, s.outliers, s.samples);
+                if(s.map != null) {
+                    out.printf(Locale.ROOT, ", \"map_us\": %.3f, \"unmap_us\": %.3f", s.map.median, s.unmap.median);
+                }
+            }
+            out.println(i < points.size()-1 ? "}," : "}");
+        }
+        out.println("  ]");
+        out.println("}");
+    }
+
+    private void writeCSV(PrintStream out) {
+        out.println(CSV_HEADER+","+CSV_STATISTICS);
+        for (Point point : points) {
+            out.printf(Locale.ROOT, "%s,%s,%s,%d,%.3f", point.copy, point.access, point.memory, point.size, point.bandwidth);
+            TransferStatistics s = point.statistics;
+            if(s != null) {
+                out.printf(Locale.ROOT, ",%.3f,%.3f,%.3f,%.3f,%d,%d", s.min, s.median, s.p95, s.stddev, s.outliers, s.samples);
+                if(s.map != null) {
+                    out.printf(Locale.ROOT, ",%.3f,%.3f\n", s.map.median, s.unmap.median);
+                }else{
+                    out.println(",,");
+                }
+            }else{
+                out.println(",,,,,,,");
+            }
+        }
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    /**
+     * Loads the points of a previous run. The format is detected from the content.
+     */
+    static List<Point> load(String file) throws IOException {
+
+        StringBuilder content = new StringBuilder();
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try{
+            String line;
+            while((line = reader.readLine()) != null) {
+                content.append(line).append('\n');
+            }
+        }finally{
+            reader.close();
+        }
+
+        String text = content.toString().trim();
+        if(text.startsWith("{")) {
+            return parseJSON(text);
+        }else{
+            return parseCSV(text);
+        }
+    }
+
+    private static List<Point> parseCSV(String text) {
+        List<Point> list = new ArrayList<Point>();
+        String[] lines = text.split("\n");
+        int[] columns = null;
+        for (String line : lines) {
+            line = line.trim();
+            if(line.isEmpty()) {
+                continue;
+            }
+            String[] values = line.split(",");
+            if(columns == null) {
+                columns = columnsOf(values);
+                continue;
+            }
+            list.add(new Point(values[columns[0]], values[columns[1]], values[columns[2]],
+                    Integer.parseInt(values[columns[3]]), Double.parseDouble(values[columns[4]]), null));
+        }
+        return list;
+    }
+
+    // indices of the columns we need, in CSV_HEADER order
+    private static int[] columnsOf(String[] header) {
+        String[] names = CSV_HEADER.split(",");
+        int[] columns = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            columns[i] = -1;
+            for (int n = 0; n < header.length; n++) {
+                if(header[n].trim().equals(names[i])) {
+                    columns[i] = n;
+                }
+            }
+            if(columns[i] == -1) {
+                throw new IllegalArgumentException("baseline is missing column '"+names[i]+"'");
+            }
+        }
+        return columns;
+    }
+
+    private static final Pattern JSON_OBJECT = Pattern.compile("\\{([^{}]*)\\}");
+    private static final Pattern JSON_FIELD  = Pattern.compile("\"(\\w+)\"\\s*:\\s*(\"[^\"]*\"|[-+0-9.eE]+)");
+
+    // parses the flat result objects written by writeJSON
+    private static List<Point> parseJSON(String text) {
+        List<Point> list = new ArrayList<Point>();
+        Matcher objects = JSON_OBJECT.matcher(text);
+        while(objects.find()) {
+            Map<String, String> fields = new LinkedHashMap<String, String>();
+            Matcher matcher = JSON_FIELD.matcher(objects.group(1));
+            while(matcher.find()) {
+                fields.put(matcher.group(1), matcher.group(2).replace("\"", ""));
+            }
+            if(fields.containsKey("size") && fields.containsKey("bandwidth")) {
+                list.add(new Point(fields.get("copy"), fields.get("access"), fields.get("memory"),
+                        Integer.parseInt(fields.get("size")), Double.parseDouble(fields.get("bandwidth")), null));
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Compares this run against the baseline and prints every matching point. A point regressed if its
+     * bandwidth dropped by more than <code>threshold</code> percent.
+     * @return the number of regressions, a run without any matching point counts as one
+     */
+    int compare(List<Point> baseline, double threshold, PrintStream out) {
+
+        Map<String, Point> current = new LinkedHashMap<String, Point>();
+        for (Point point : points) {
+            current.put(point.key(), point);
+        }
+
+        out.println("Comparison against baseline (threshold "+threshold+"%)");
+        out.printf("   %-18s %-8s %-9s %12s %12s %12s %8s\n", "copy", "access", "memory", "size", "baseline", "current", "delta");
+
+        int regressions = 0;
+        int matched = 0;
+        for (Point base : baseline) {
+            Point point = current.get(base.key());
+            if(point == null) {
+                continue;
+            }
+            matched++;
+            double delta = 100.0 * (point.bandwidth - base.bandwidth) / base.bandwidth;
+            boolean regressed = delta < -threshold;
+            if(regressed) {
+                regressions++;
+            }
+            out.printf("   %-18s %-8s %-9s %12d %12.1f %12.1f %7.1f%% %s\n",
+                    base.copy, base.access, base.memory, base.size, base.bandwidth, point.bandwidth, delta, regressed ? "REGRESSION" : "ok");
+        }
+        out.println();
+        if(matched == 0) {
+            out.println("no point of this run matches the baseline: FAIL");
+            return 1;
+        }
+        out.println(matched+" points compared, "+regressions+" regression(s): "+(regressions == 0 ? "PASS" : "FAIL"));
+        return regressions;
+    }
+
+    /**
+     * One measured point. Bandwidth is in MB/s, statistics are null for loaded baselines.
+     */
+    static class Point {
+
+        final String copy;
+        final String access;
+        final String memory;
+        final int size;
+        final double bandwidth;
+        final TransferStatistics statistics;
+
+        Point(String copy, String access, String memory, int size, double bandwidth, TransferStatistics statistics) {
+            this.copy = copy;
+            this.access = access;
+            this.memory = memory;
+            this.size = size;
+            this.bandwidth = bandwidth;
+            this.statistics = statistics;
+        }
+
+        String key() {
+            return copy+"/"+access+"/"+memory+"/"+size;
+        }
+    }
+
+}
@@ -0,0 +1,182 @@
+package com.jogamp.opencl.demos.bandwidth;
+
+import com.jogamp.common.nio.Buffers;
+import com.jogamp.opencl.CLBuffer;
+import com.jogamp.opencl.CLCommandQueue;
+import com.jogamp.opencl.CLContext;
+import com.jogamp.opencl.CLDevice;
+import com.jogamp.opencl.CLEventList;
+import com.jogamp.opencl.CLMemory.Mem;
+import com.jogamp.opencl.demos.bandwidth.BandwidthBenchmark.COPY;
+import com.jogamp.opencl.demos.bandwidth.BandwidthBenchmark.MEMORY;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.jogamp.opencl.CLMemory.Map.*;
+
+/**
+ * Saturation test of the host/device links. Every device of the context gets a host to device
+ * and a device to host link, each with its own queue, buffers and host thread. All links are
+ * measured alone first and then all at once, which shows how much of the bus bandwidth
+ * survives duplex and multi device traffic.
+ * Host memory is either pageable or pinned.
+ */
+class ConcurrentTransferTest {
+
+    private static final int ITERATIONS = 100;
+
+    private final int memSize;
+    private final MEMORY memMode;
+    private final List<Link> links = new ArrayList<Link>();
+
+    ConcurrentTransferTest(CLContext context, int memSize, MEMORY memMode) {
+        if(memMode != MEMORY.PAGEABLE && memMode != MEMORY.PINNED) {
+            throw new IllegalArgumentException("unsupported memory mode: "+memMode);
+        }
+        this.memSize = memSize;
+        this.memMode = memMode;
+        CLDevice[] devices = context.getDevices();
+        for (int i = 0; i < devices.length; i++) {
+            links.add(new Link(context, devices[i], i, COPY.HOST_TO_DEVICE));
+            links.add(new Link(context, devices[i], i, COPY.DEVICE_TO_HOST));
+        }
+    }
+
+    void run(BandwidthResults results) {
+
+        // reference, one link at a time
+        double[] alone = new double[links.size()];
+        for (int i = 0; i < links.size(); i++) {
+            alone[i] = runLinks(Collections.singletonList(links.get(i)))[0].getBandwidth();
+        }
+
+        // everything at once
+        long time = System.nanoTime();
+        TransferStatistics[] concurrent = runLinks(links);
+        time = System.nanoTime() - time;
+
+        double aggregate = (double)memSize * ITERATIONS * links.size() / (time / 1000000000.0) / (double)(1 << 20);
+
+        System.out.println("Concurrent Bandwidth, "+links.size()/2+" Device(s), "+links.size()+" Link(s), "
+                + memMode.name().toLowerCase()+" memory, "+memSize+" Bytes");
+        System.out.println();
+        System.out.println("   Link\t\t\t\tAlone(MB/s)\tConcurrent(MB/s)\tRatio");
+        double sum = 0;
+        for (int i = 0; i < links.size(); i++) {
+            Link link = links.get(i);
+            double bandwidth = concurrent[i].getBandwidth();
+            sum += alone[i];
+            System.out.printf("   %-24s\t%.1f\t\t%.1f\t\t\t%.2f\n", link.name(), alone[i], bandwidth, bandwidth / alone[i]);
+            results.add("CONCURRENT_"+link.kind.name()+"_"+link.index, "DIRECT", memMode.name(), memSize, bandwidth, concurrent[i]);
+        }
+        System.out.printf("   %-24s\t%.1f\t\t%.1f\t\t\t%.2f\n\n", "aggregate", sum, aggregate, aggregate / sum);
+        results.add("CONCURRENT_AGGREGATE", "DIRECT", memMode.name(), memSize, aggregate, null);
+    }
+
+    /**
+     * Starts all links at the same time and waits until every one of them finished.
+     */
+    private TransferStatistics[] runLinks(List<Link> list) {
+
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(list.size());
+        try{
+            List<Future<TransferStatistics>> futures = new ArrayList<Future<TransferStatistics>>();
+            for (final Link link : list) {
+                futures.add(executor.submit(new Callable<TransferStatistics>() {
+                    public TransferStatistics call() throws InterruptedException {
+                        start.await();
+                        return link.transfer();
+                    }
+                }));
+            }
+            start.countDown();
+
+            TransferStatistics[] statistics = new TransferStatistics[list.size()];
+            for (int i = 0; i < statistics.length; i++) {
+                statistics[i] = futures.get(i).get();
+            }
+            return statistics;
+        }catch(InterruptedException ex) {
+            throw new RuntimeException(ex);
+        }catch(ExecutionException ex) {
+            throw new RuntimeException(ex.getCause());
+        }finally{
+            executor.shutdown();
+        }
+    }
+
+    void release() {
+        for (Link link : links) {
+            link.release();
+        }
+    }
+
+    /**
+     * One direction of one device.
+     */
+    private class Link {
+
+        final int index;
+        final COPY kind;
+
+        private final CLCommandQueue queue;
+        private final CLBuffer<ByteBuffer> deviceBuffer;
+        private final CLBuffer<ByteBuffer> pinnedBuffer;
+        private final ByteBuffer hostData;
+
+        Link(CLContext context, CLDevice device, int index, COPY kind) {
+            this.index = index;
+            this.kind = kind;
+
+            queue = device.createCommandQueue(CLCommandQueue.Mode.PROFILING_MODE);
+
+            if(memMode == MEMORY.PINNED) {
+                pinnedBuffer = context.createBuffer(memSize, Mem.READ_WRITE, Mem.ALLOCATE_BUFFER);
+                hostData = queue.putMapBuffer(pinnedBuffer, READ_WRITE, true);
+            }else{
+                pinnedBuffer = null;
+                hostData = Buffers.newDirectByteBuffer(memSize);
+            }
+            deviceBuffer = context.createBuffer(memSize, Mem.READ_WRITE).cloneWith(hostData);
+            queue.putWriteBuffer(deviceBuffer, true);
+        }
+
+        TransferStatistics transfer() {
+            CLEventList events = new CLEventList(ITERATIONS);
+            for (int i = 0; i < ITERATIONS; i++) {
+                if(kind == COPY.HOST_TO_DEVICE) {
+                    queue.putWriteBuffer(deviceBuffer, false, events);
+                }else{
+                    queue.putReadBuffer(deviceBuffer, false, events);
+                }
+            }
+            queue.finish();
+            TransferStatistics statistics = TransferStatistics.fromEvents(events, memSize);
+            events.release();
+            return statistics;
+        }
+
+        String name() {
+            return (kind == COPY.HOST_TO_DEVICE ? "host -> device " : "device -> host ")+index;
+        }
+
+        void release() {
+            deviceBuffer.release();
+            if(pinnedBuffer != null) {
+                queue.putUnmapMemory(pinnedBuffer, hostData);
+                pinnedBuffer.release();
+            }
+            queue.release();
+        }
+    }
+
+}
@@ -0,0 +1,159 @@
+package com.jogamp.opencl.demos.bandwidth;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Per NUMA node runs of the {@link BandwidthBenchmark}.
+ * <p>
+ * Java can not set the affinity of a thread, the benchmark is therefore started once per node
+ * in a child JVM through <code>numactl --cpunodebind --membind</code>. The thread allocating
+ * the host buffers and the pages it touches first are local to that node. The child writes CSV
+ * which is merged into the results of the parent, the memory column is tagged with the node.
+ * </p>
+ */
+class NumaNodes {
+
+    private static final String NODE_DIR = "/sys/devices/system/node";
+
+    // handled by the parent
+    private static final String[] PARENT_ARGS = {"--numa=", "--output=", "--file=", "--baseline=", "--threshold="};
+
+    private NumaNodes() {
+    }
+
+    /**
+     * Parses <code>all</code> or a comma separated list of node ids.
+     */
+    static int[] parse(String value) {
+        if(value.equals("all")) {
+            return list();
+        }
+        String[] values = value.split(",");
+        int[] nodes = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            nodes[i] = Integer.parseInt(values[i].trim());
+        }
+        return nodes;
+    }
+
+    /**
+     * Lists the NUMA nodes of this machine, a machine without NUMA support has node 0 only.
+     */
+    static int[] list() {
+        String[] names = new File(NODE_DIR).list();
+        if(names == null) {
+            return new int[] {0};
+        }
+        List<Integer> nodes = new ArrayList<Integer>();
+        for (String name : names) {
+            if(name.matches("node\\d+")) {
+                nodes.add(Integer.parseInt(name.substring(4)));
+            }
+        }
+        int[] result = new int[nodes.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = nodes.get(i);
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Runs the benchmark with the given args bound to one node and returns its points.
+     */
+    static List<BandwidthResults.Point> runOnNode(int node, String[] args) throws IOException {
+
+        File csv = File.createTempFile("bandwidth-node"+node+"-", ".csv");
+        csv.deleteOnExit();
+
+        List<String> command = new ArrayList<String>();
+        command.add("numactl");
+        command.add("--cpunodebind="+node);
+        command.add("--membind="+node);
+        command.add(System.getProperty("java.home")+File.separator+"bin"+File.separator+"java");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("-Djava.library.path="+System.getProperty("java.library.path"));
+        command.add(BandwidthBenchmark.class.getName());
+        for (String arg : args) {
+            if(!isParentArg(arg)) {
+                command.add(arg);
+            }
+        }
+        command.add("--output=csv");
+        command.add("--file="+csv.getAbsolutePath());
+
+        Process process;
+        try{
+            process = new ProcessBuilder(command).inheritIO().start();
+        }catch(IOException ex) {
+            throw new IOException("can not start numactl, it is required for --numa", ex);
+        }
+
+        try{
+            int exitCode = process.waitFor();
+            if(exitCode != 0) {
+                throw new RuntimeException("benchmark on NUMA node "+node+" failed with exit code "+exitCode);
+            }
+        }catch(InterruptedException ex) {
+            process.destroy();
+            throw new RuntimeException(ex);
+        }
+
+        try{
+            return BandwidthResults.load(csv.getAbsolutePath());
+        }finally{
+            csv.delete();
+        }
+    }
+
+    /**
+     * Prints the bandwidth of every point side by side for all nodes.
+     */
+    static void printSummary(int[] nodes, List<List<BandwidthResults.Point>> perNode, PrintStream out) {
+
+        out.println("Bandwidth(MB/s) per NUMA node");
+        out.printf("   %-26s %-8s %-9s %12s", "copy", "access", "memory", "size");
+        for (int node : nodes) {
+            out.printf(" %10s", "node "+node);
+        }
+        out.println();
+
+        for (BandwidthResults.Point point : perNode.get(0)) {
+            out.printf("   %-26s %-8s %-9s %12d", point.copy, point.access, point.memory, point.size);
+            for (List<BandwidthResults.Point> points : perNode) {
+                BandwidthResults.Point match = null;
+                for (BandwidthResults.Point candidate : points) {
+                    if(candidate.key().equals(point.key())) {
+                        match = candidate;
+                    }
+                }
+                out.printf(match == null ? " %10s" : " %10.1f", match == null ? "-" : match.bandwidth);
+            }
+            out.println();
+        }
+        out.println();
+    }
+
+    /**
+     * True for host to device and device to host transfers, only those depend on the node.
+     */
+    static boolean involvesHost(BandwidthResults.Point point) {
+        return !point.copy.equals(BandwidthBenchmark.COPY.DEVICE_TO_DEVICE.name());
+    }
+
+    private static boolean isParentArg(String arg) {
+        for (String prefix : PARENT_ARGS) {
+            if(arg.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
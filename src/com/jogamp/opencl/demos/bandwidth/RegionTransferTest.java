@@ -0,0 +1,198 @@
+package com.jogamp.opencl.demos.bandwidth;
+
+import com.jogamp.common.nio.Buffers;
+import com.jogamp.opencl.CLBuffer;
+import com.jogamp.opencl.CLCommandQueue;
+import com.jogamp.opencl.CLContext;
+import com.jogamp.opencl.CLMemory.Mem;
+import com.jogamp.opencl.CLSubBuffer;
+import com.jogamp.opencl.demos.bandwidth.BandwidthBenchmark.COPY;
+import java.nio.ByteBuffer;
+
+/**
+ * Transfers of buffer regions instead of whole buffers. The buffer is treated as an image of
+ * {@link #ROW_PITCH} byte wide rows, the measured tile is a quarter of it.
+ * <ul>
+ * <li>contiguous: the tile bytes as one whole buffer transfer (reference)</li>
+ * <li>sub-buffer: the tile bytes through a sub-buffer of the image</li>
+ * <li>rect 2D: the tile as one rectangular transfer</li>
+ * <li>rows: the tile row by row</li>
+ * <li>box 3D: a box through a volume of {@link #SLICES} slices, one rectangular transfer per slice</li>
+ * </ul>
+ * Followed by many small transfers vs. one batched transfer of the same bytes for a range of
+ * chunk sizes. Every operation is timed from the first enqueue until finish, enqueue overhead included.
+ * Host memory is always pageable.
+ */
+class RegionTransferTest {
+
+    private static final int ITERATIONS = 20;
+    private static final int ROW_PITCH = 8192;
+    private static final int SLICES = 16;
+
+    private static final int MIN_CHUNK = 1 << 10;   // 1 KB
+    private static final int MAX_CHUNK = 1 << 20;   // 1 MB
+
+    private final CLCommandQueue queue;
+    private final COPY kind;
+
+    private final int rows;
+    private final ByteBuffer hostData;
+    private final CLBuffer<ByteBuffer> buffer;
+
+    RegionTransferTest(CLCommandQueue queue, int memSize, COPY kind) {
+
+        if(kind == COPY.DEVICE_TO_DEVICE) {
+            throw new IllegalArgumentException("region transfers are host <-> device only");
+        }
+        if(memSize < ROW_PITCH * SLICES * 2) {
+            throw new IllegalArgumentException("memSize must be at least "+ROW_PITCH * SLICES * 2);
+        }
+
+        this.queue = queue;
+        this.kind = kind;
+        this.rows = memSize / ROW_PITCH;
+
+        CLContext context = queue.getContext();
+        hostData = Buffers.newDirectByteBuffer(rows * ROW_PITCH);
+        buffer = context.createBuffer(rows * ROW_PITCH, Mem.READ_WRITE).cloneWith(hostData);
+        queue.putWriteBuffer(buffer, true);
+    }
+
+    void run(BandwidthResults results) {
+
+        final int tileWidth = ROW_PITCH / 2;
+        final int tileHeight = rows / 2;
+        final int tileBytes = tileWidth * tileHeight;
+
+        System.out.println("Region Transfers, "+(kind == COPY.HOST_TO_DEVICE ? "Host to Device" : "Device to Host")
+                + ", image "+ROW_PITCH+" x "+rows+" Bytes, tile "+tileWidth+" x "+tileHeight+" Bytes");
+        System.out.println();
+        System.out.println("   Operation\t\tTransfers\tBandwidth(MB/s)\tmedian(us)\tp95(us)");
+
+        final CLBuffer<ByteBuffer> contiguous = queue.getContext().createBuffer(tileBytes, Mem.READ_WRITE)
+                .cloneWith(Buffers.newDirectByteBuffer(tileBytes));
+        report("contiguous", 1, tileBytes, measure(tileBytes, new Operation() {
+            void enqueue() {
+                transfer(contiguous);
+            }
+        }), results);
+        contiguous.release();
+
+        // sub-buffer origins must be aligned to the device base address alignment
+        int alignment = Math.max(1, queue.getDevice().getMemBaseAddrAlign() / 8);
+        int offset = roundUp(rows / 4 * ROW_PITCH, alignment);
+        final CLSubBuffer<ByteBuffer> subBuffer = buffer.createSubBuffer(offset, tileBytes);
+        report("sub-buffer", 1, tileBytes, measure(tileBytes, new Operation() {
+            void enqueue() {
+                transfer(subBuffer);
+            }
+        }), results);
+        subBuffer.release();
+
+        final int x = ROW_PITCH / 4;
+        final int y = rows / 4;
+        report("rect 2D", 1, tileBytes, measure(tileBytes, new Operation() {
+            void enqueue() {
+                transferRect(x, y, tileWidth, tileHeight, ROW_PITCH);
+            }
+        }), results);
+
+        report("rows", tileHeight, tileBytes, measure(tileBytes, new Operation() {
+            void enqueue() {
+                for (int row = 0; row < tileHeight; row++) {
+                    transferRect(x, y + row, tileWidth, 1, ROW_PITCH);
+                }
+            }
+        }), results);
+
+        final int sliceRows = rows / SLICES;
+        final int boxHeight = sliceRows / 2;
+        int boxBytes = tileWidth * boxHeight * SLICES;
+        report("box 3D", SLICES, boxBytes, measure(boxBytes, new Operation() {
+            void enqueue() {
+                for (int z = 0; z < SLICES; z++) {
+                    transferRect(x, z * sliceRows + sliceRows / 4, tileWidth, boxHeight, ROW_PITCH);
+                }
+            }
+        }), results);
+        System.out.println();
+
+        // batching threshold
+        final int total = Math.min(tileBytes, 16 * MAX_CHUNK);
+        System.out.println("   Chunk (Bytes)\tTransfers\tChunked(MB/s)\tBatched(MB/s)\tSpeedup");
+
+        TransferStatistics batched = measure(total, new Operation() {
+            void enqueue() {
+                transferRect(0, 0, total, 1, total);
+            }
+        });
+        for (int chunk = MIN_CHUNK; chunk <= Math.min(MAX_CHUNK, total); chunk <<= 2) {
+            final int size = chunk;
+            final int count = total / chunk;
+            TransferStatistics chunked = measure(total, new Operation() {
+                void enqueue() {
+                    for (int i = 0; i < count; i++) {
+                        transferRect(0, i, size, 1, size);
+                    }
+                }
+            });
+            System.out.printf("   %d\t\t%s%d\t\t%.1f\t\t%.1f\t\t%.2f\n", chunk, (chunk < 10000) ? "\t" : "", count,
+                    chunked.getBandwidth(), batched.getBandwidth(), batched.getBandwidth() / chunked.getBandwidth());
+            results.add("REGION_"+kind.name(), "CHUNKED_"+chunk, "PAGEABLE", total, chunked.getBandwidth(), chunked);
+        }
+        results.add("REGION_"+kind.name(), "BATCHED", "PAGEABLE", total, batched.getBandwidth(), batched);
+        System.out.println();
+    }
+
+    private void report(String name, int transfers, int bytes, TransferStatistics statistics, BandwidthResults results) {
+        System.out.printf("   %-16s\t%d\t\t%.1f\t\t%.1f\t\t%.1f\n", name, transfers, statistics.getBandwidth(), statistics.median, statistics.p95);
+        results.add("REGION_"+kind.name(), name.toUpperCase().replace(' ', '_'), "PAGEABLE", bytes, statistics.getBandwidth(), statistics);
+    }
+
+    private TransferStatistics measure(int bytes, Operation operation) {
+
+        // warmup
+        operation.enqueue();
+        queue.finish();
+
+        long[] durations = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            long time = System.nanoTime();
+            operation.enqueue();
+            queue.finish();
+            durations[i] = System.nanoTime() - time;
+        }
+        return new TransferStatistics(durations, bytes);
+    }
+
+    private void transfer(CLBuffer<?> target) {
+        if(kind == COPY.HOST_TO_DEVICE) {
+            queue.putWriteBuffer(target, false);
+        }else{
+            queue.putReadBuffer(target, false);
+        }
+    }
+
+    // same region on host and device, both with the given row pitch
+    private void transferRect(int x, int y, int width, int height, int pitch) {
+        if(kind == COPY.HOST_TO_DEVICE) {
+            queue.putWriteBufferRect(buffer, x, y, x, y, width, height, pitch, 0, pitch, 0, false, null, null);
+        }else{
+            queue.putReadBufferRect(buffer, x, y, x, y, width, height, pitch, 0, pitch, 0, false, null, null);
+        }
+    }
+
+    private static int roundUp(int value, int multiple) {
+        int r = value % multiple;
+        return r == 0 ? value : value + multiple - r;
+    }
+
+    void release() {
+        buffer.release();
+    }
+
+    private static abstract class Operation {
+        abstract void enqueue();
+    }
+
+}
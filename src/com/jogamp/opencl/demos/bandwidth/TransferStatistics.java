@@ -0,0 +1,117 @@
+package com.jogamp.opencl.demos.bandwidth;
+
+import com.jogamp.opencl.CLEvent;
+import com.jogamp.opencl.CLEventList;
+import java.util.Arrays;
+
+import static com.jogamp.opencl.CLEvent.ProfilingCommand.*;
+
+/**
+ * Statistics over the per iteration durations of a transfer test.
+ * <p>
+ * min, median and p95 are computed over all samples, they describe jitter and tail latency.
+ * Mean, standard deviation and the derived bandwidth are computed after rejecting outliers
+ * further than {@link #OUTLIER_THRESHOLD} scaled median absolute deviations from the median.
+ * All times are in microseconds. Mapped transfers additionally carry the statistics of their map and unmap commands.
+ * </p>
+ */
+class TransferStatistics {
+
+    static final double OUTLIER_THRESHOLD = 5.0;
+
+    // MAD to standard deviation for normal distributions
+    private static final double MAD_SCALE = 1.4826;
+
+    final int samples;
+    final int outliers;
+
+    final double min;
+    final double median;
+    final double p95;
+    final double mean;
+    final double stddev;
+
+    // map and unmap costs of mapped transfers, null otherwise
+    TransferStatistics map;
+    TransferStatistics unmap;
+
+    // bytes moved per iteration
+    private final double bytes;
+
+    /**
+     * @param durations per iteration durations in nanoseconds
+     * @param bytes bytes moved by one iteration
+     */
+    TransferStatistics(long[] durations, double bytes) {
+
+        this.bytes = bytes;
+        this.samples = durations.length;
+
+        double[] sorted = new double[durations.length];
+        for (int i = 0; i < durations.length; i++) {
+            sorted[i] = durations[i] / 1000.0;
+        }
+        Arrays.sort(sorted);
+
+        min = sorted[0];
+        median = percentile(sorted, 50);
+        p95 = percentile(sorted, 95);
+
+        double[] deviations = new double[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            deviations[i] = Math.abs(sorted[i] - median);
+        }
+        Arrays.sort(deviations);
+        double limit = OUTLIER_THRESHOLD * MAD_SCALE * percentile(deviations, 50);
+
+        double sum = 0;
+        int kept = 0;
+        for (double value : sorted) {
+            if(limit == 0 || Math.abs(value - median) <= limit) {
+                sum += value;
+                kept++;
+            }
+        }
+        mean = sum / kept;
+        outliers = samples - kept;
+
+        double variance = 0;
+        for (double value : sorted) {
+            if(limit == 0 || Math.abs(value - median) <= limit) {
+                variance += (value - mean) * (value - mean);
+            }
+        }
+        stddev = kept > 1 ? Math.sqrt(variance / (kept - 1)) : 0;
+    }
+
+    /**
+     * Reads START and END of every profiled event.
+     */
+    static TransferStatistics fromEvents(CLEventList events, double bytes) {
+        long[] durations = new long[events.size()];
+        for (int i = 0; i < durations.length; i++) {
+            CLEvent event = events.getEvent(i);
+            durations[i] = event.getProfilingInfo(END) - event.getProfilingInfo(START);
+        }
+        return new TransferStatistics(durations, bytes);
+    }
+
+    void setMappingCosts(TransferStatistics map, TransferStatistics unmap) {
+        this.map = map;
+        this.unmap = unmap;
+    }
+
+    // nearest rank
+    private static double percentile(double[] sorted, double percent) {
+        int rank = (int)Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(0, Math.min(rank, sorted.length) - 1)];
+    }
+
+    /**
+     * Mean bandwidth in MB/s.
+     */
+    double getBandwidth() {
+        return bytes / (mean / 1000000.0) / (double)(1 << 20);
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.jogamp.opencl.demos.bandwidth;
+
+import com.jogamp.common.nio.Buffers;
+import com.jogamp.opencl.CLBuffer;
+import com.jogamp.opencl.CLCommandQueue;
+import com.jogamp.opencl.CLMemory.Mem;
+import com.jogamp.opencl.demos.benchmark.BenchmarkRunner;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Host to device and back round trip of one pageable buffer as benchmark workload,
+ * the size is in bytes. See {@link BandwidthBenchmark} for the detailed transfer tests.
+ */
+public class TransferWorkload implements BenchmarkRunner.Workload {
+
+    public static final int DEFAULT_SIZE = 32 * (1 << 20);
+
+    private final int size;
+
+    private CLCommandQueue queue;
+    private ByteBuffer source;
+    private ByteBuffer result;
+    private CLBuffer<ByteBuffer> upload;
+    private CLBuffer<ByteBuffer> download;
+
+    public TransferWorkload(int size) {
+        this.size = size;
+    }
+
+    public String getName() {
+        return "transfer";
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setup(CLCommandQueue queue) throws IOException {
+        this.queue = queue;
+        source = Buffers.newDirectByteBuffer(size);
+        for (int i = 0; i < size; i++) {
+            source.put(i, (byte)i);
+        }
+        result = Buffers.newDirectByteBuffer(size);
+
+        // same device memory, the data comes back into a different host buffer
+        upload = queue.getContext().createBuffer(size, Mem.READ_WRITE).cloneWith(source);
+        download = upload.cloneWith(result);
+    }
+
+    public void reset() {
+        for (int i = 0; i < size; i++) {
+            result.put(i, (byte)0);
+        }
+    }
+
+    public void run() {
+        queue.putWriteBuffer(upload, false)
+             .putReadBuffer(download, true);
+    }
+
+    public void verify() {
+        if(!result.equals(source)) {
+            throw new RuntimeException("round trip changed the data");
+        }
+    }
+
+    public void release() {
+        upload.release();
+    }
+
+}
@@ -0,0 +1,445 @@
+package com.jogamp.opencl.demos.benchmark;
+
+import com.jogamp.opencl.CLCommandQueue;
+import com.jogamp.opencl.CLContext;
+import com.jogamp.opencl.CLDevice;
+import com.jogamp.opencl.CLPlatform;
+import com.jogamp.opencl.demos.bandwidth.TransferWorkload;
+import com.jogamp.opencl.demos.bitonicsort.BitonicSortWorkload;
+import com.jogamp.opencl.demos.hellojocl.VectorAddWorkload;
+import com.jogamp.opencl.demos.radixsort.RadixSortWorkload;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static java.lang.System.*;
+
+/**
+ * Shared benchmark runner. Workloads plug in through {@link Workload}, the runner selects the
+ * devices, handles warmup and repetitions and reports to a {@link ResultSink}.
+ * Every device gets its own context, so CPU OpenCL devices can be benchmarked headlessly.
+ * <p>
+ * args:<br/>
+ * --platform=0 --device=0 or --type=CPU|GPU|ACCELERATOR|ALL (all devices of that type)<br/>
+ * --warmup=5 --repetitions=10 --size=n<br/>
+ * --output=text|csv --file=results.csv<br/>
+ * </p>
+ * Unknown args are left to the demo, see {@link #getArgs()} and {@link #checkArgs()}. The demos start the runner
+ * with <code>--benchmark</code>, {@link #main} runs all workloads or the ones selected with
+ * <code>--workloads=vector_add,radix_sort,bitonic_sort,transfer</code>.
+ */
+public class BenchmarkRunner {
+
+    /**
+     * A benchmarked compute path. Only {@link #run()} is timed.
+     */
+    public interface Workload {
+
+        String getName();
+
+        /** problem size in elements, used for the throughput. */
+        long getSize();
+
+        /**
+         * builds programs and allocates buffers. Throws an {@link UnsupportedSizeException} before
+         * allocating anything if the workload can not run with its size, it is reported as skipped.
+         */
+        void setup(CLCommandQueue queue) throws IOException;
+
+        /** restores the input before every run. */
+        void reset();
+
+        /** runs the workload to completion. */
+        void run();
+
+        /** checks the result of the last run, throws a RuntimeException if it is wrong. */
+        void verify();
+
+        void release();
+    }
+
+    /**
+     * Receives the results of all workloads on all devices.
+     */
+    public interface ResultSink {
+
+        void result(Result result);
+
+        void skipped(Workload workload, CLDevice device, String reason);
+
+        void close();
+    }
+
+    /**
+     * Thrown by {@link Workload#setup} if the problem size is not supported, e.g. not a power of two.
+     */
+    public static class UnsupportedSizeException extends RuntimeException {
+
+        public UnsupportedSizeException(String message) {
+            super(message);
+        }
+    }
+
+    public enum OUTPUT { TEXT, CSV };
+
+    private static final String BENCHMARK_FLAG = "--benchmark";
+    private static final int DEFAULT_WARMUP = 5;
+    private static final int DEFAULT_REPETITIONS = 10;
+
+    private CLPlatform platform = CLPlatform.getDefault();
+    private int deviceIndex = -1;
+    private CLDevice.Type type = null;
+
+    private int warmup = -1;
+    private int repetitions = -1;
+    private int size = -1;
+
+    private OUTPUT output = OUTPUT.TEXT;
+    private String file = null;
+
+    private final List<String> given = new ArrayList<String>();
+    private final List<String> remaining = new ArrayList<String>();
+
+    private BenchmarkRunner() {
+    }
+
+    /**
+     * Creates a runner configured by the shared flags of the given args.
+     */
+    public static BenchmarkRunner create(String[] args) {
+
+        BenchmarkRunner runner = new BenchmarkRunner();
+
+        runner.given.addAll(Arrays.asList(args));
+
+        for (String arg : args) {
+            if(arg.equals(BENCHMARK_FLAG)) {
+                continue;
+            }else if(arg.startsWith("--platform=")) {
+                runner.platform = CLPlatform.listCLPlatforms()[Integer.parseInt(arg.substring(11))];
+            }else if(arg.startsWith("--device=")) {
+                runner.deviceIndex = Integer.parseInt(arg.substring(9));
+            }else if(arg.startsWith("--type=")) {
+                runner.type = CLDevice.Type.valueOf(arg.substring(7).toUpperCase());
+            }else if(arg.startsWith("--warmup=")) {
+                runner.warmup = Integer.parseInt(arg.substring(9));
+            }else if(arg.startsWith("--repetitions=")) {
+                runner.repetitions = Integer.parseInt(arg.substring(14));
+            }else if(arg.startsWith("--size=")) {
+                runner.size = Integer.parseInt(arg.substring(7));
+            }else if(arg.startsWith("--output=")) {
+                runner.output = OUTPUT.valueOf(arg.substring(9).toUpperCase());
+            }else if(arg.startsWith("--file=")) {
+                runner.file = arg.substring(7);
+            }else{
+                runner.remaining.add(arg);
+            }
+        }
+        return runner;
+    }
+
+    /**
+     * Returns true if a demo was started with <code>--benchmark</code>.
+     */
+    public static boolean isRequested(String[] args) {
+        return Arrays.asList(args).contains(BENCHMARK_FLAG);
+    }
+
+    /**
+     * The args not consumed by the runner.
+     */
+    public String[] getArgs() {
+        return remaining.toArray(new String[remaining.size()]);
+    }
+
+    /**
+     * Exits with "unknown arg" if args are left which neither the runner nor the demo consumed.
+     * Demos without args of their own call this right after {@link #create}.
+     */
+    public void checkArgs() {
+        if(!remaining.isEmpty()) {
+            out.println("unknown arg: "+remaining.get(0));
+            exit(1);
+        }
+    }
+
+    /**
+     * Exits with "unsupported arg" if one of the given runner flags was passed. For tools which
+     * take only some of the shared flags, e.g. the ones which do not report through a {@link ResultSink}.
+     */
+    public void rejectArgs(String... flags) {
+        for (String arg : given) {
+            for (String flag : flags) {
+                if(arg.equals(flag) || arg.startsWith(flag+"=")) {
+                    out.println("unsupported arg: "+arg);
+                    exit(1);
+                }
+            }
+        }
+    }
+
+    public CLPlatform getPlatform() {
+        return platform;
+    }
+
+    /**
+     * The warmup iterations given with <code>--warmup</code> or the default.
+     */
+    public int getWarmup(int defaultWarmup) {
+        return warmup == -1 ? defaultWarmup : warmup;
+    }
+
+    /**
+     * The measured iterations given with <code>--repetitions</code> or the default.
+     */
+    public int getRepetitions(int defaultRepetitions) {
+        return repetitions == -1 ? defaultRepetitions : repetitions;
+    }
+
+    /**
+     * The problem size given with <code>--size</code> or the default.
+     */
+    public int getSize(int defaultSize) {
+        return size == -1 ? defaultSize : size;
+    }
+
+    /**
+     * The selected devices, the fastest device of the platform by default.
+     */
+    public CLDevice[] getDevices() {
+        return getDevices(null);
+    }
+
+    /**
+     * The selected devices, all devices of the given type if none were selected
+     * or the fastest device of the platform if the type is null.
+     */
+    public CLDevice[] getDevices(CLDevice.Type defaultType) {
+        if(deviceIndex != -1) {
+            return new CLDevice[] {platform.listCLDevices()[deviceIndex]};
+        }else if(type != null) {
+            return platform.listCLDevices(type);
+        }else if(defaultType != null) {
+            return platform.listCLDevices(defaultType);
+        }else{
+            return new CLDevice[] {platform.getMaxFlopsDevice()};
+        }
+    }
+
+    /**
+     * Runs every workload on every selected device.
+     */
+    public void run(Workload... workloads) throws IOException {
+
+        ResultSink sink = createSink();
+        try{
+            for (CLDevice device : getDevices()) {
+                CLContext context = CLContext.create(device);
+                try{
+                    CLCommandQueue queue = device.createCommandQueue();
+                    for (Workload workload : workloads) {
+                        run(workload, queue, sink);
+                    }
+                }finally{
+                    context.release();
+                }
+            }
+        }finally{
+            sink.close();
+        }
+    }
+
+    private void run(Workload workload, CLCommandQueue queue, ResultSink sink) throws IOException {
+
+        CLDevice device = queue.getDevice();
+        try{
+            workload.setup(queue);
+        }catch(UnsupportedSizeException ex) {
+            sink.skipped(workload, device, ex.getMessage());
+            return;
+        }
+
+        try{
+            for (int i = 0; i < getWarmup(DEFAULT_WARMUP); i++) {
+                workload.reset();
+                workload.run();
+            }
+
+            double[] samples = new double[getRepetitions(DEFAULT_REPETITIONS)];
+            for (int i = 0; i < samples.length; i++) {
+                workload.reset();
+
+                long time = nanoTime();
+                workload.run();
+                samples[i] = (nanoTime() - time) / 1000000.0;
+            }
+            workload.verify();
+
+            sink.result(new Result(workload.getName(), device.getName(), workload.getSize(), samples));
+        }finally{
+            workload.release();
+        }
+    }
+
+    private ResultSink createSink() throws IOException {
+        PrintStream stream = file == null ? out : new PrintStream(new FileOutputStream(file));
+        switch (output) {
+            case CSV:
+                return new CSVSink(stream);
+            default:
+                return new TextSink(stream);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+
+        BenchmarkRunner runner = create(args);
+
+        List<String> names = Arrays.asList("vector_add", "radix_sort", "bitonic_sort", "transfer");
+        for (String arg : runner.getArgs()) {
+            if(arg.startsWith("--workloads=")) {
+                names = Arrays.asList(arg.substring(12).toLowerCase().split(","));
+            }else{
+                out.println("unknown arg: "+arg);
+                exit(1);
+            }
+        }
+
+        List<Workload> workloads = new ArrayList<Workload>();
+        for (String name : names) {
+            if(name.equals("vector_add")) {
+                workloads.add(new VectorAddWorkload(runner.getSize(VectorAddWorkload.DEFAULT_SIZE)));
+            }else if(name.equals("radix_sort")) {
+                workloads.add(new RadixSortWorkload(runner.getSize(RadixSortWorkload.DEFAULT_SIZE)));
+            }else if(name.equals("bitonic_sort")) {
+                workloads.add(new BitonicSortWorkload(runner.getSize(BitonicSortWorkload.DEFAULT_SIZE)));
+            }else if(name.equals("transfer")) {
+                workloads.add(new TransferWorkload(runner.getSize(TransferWorkload.DEFAULT_SIZE)));
+            }else{
+                throw new IllegalArgumentException("unknown workload: "+name);
+            }
+        }
+        runner.run(workloads.toArray(new Workload[workloads.size()]));
+    }
+
+    /**
+     * Timing of one workload on one device, samples are in ms.
+     */
+    public static class Result {
+
+        public final String workload;
+        public final String device;
+        public final long size;
+        public final double[] samples;
+
+        public final double mean;
+        public final double stddev;
+        public final double min;
+        public final double median;
+
+        Result(String workload, String device, long size, double[] samples) {
+            this.workload = workload;
+            this.device = device;
+            this.size = size;
+            this.samples = samples;
+
+            double[] sorted = samples.clone();
+            Arrays.sort(sorted);
+            min = sorted[0];
+            median = sorted[sorted.length / 2];
+
+            double sum = 0;
+            for (double sample : samples) {
+                sum += sample;
+            }
+            mean = sum / samples.length;
+
+            double variance = 0;
+            for (double sample : samples) {
+                variance += (sample - mean) * (sample - mean);
+            }
+            stddev = samples.length > 1 ? Math.sqrt(variance / (samples.length - 1)) : 0;
+        }
+
+        /**
+         * Million elements per second at the mean time.
+         */
+        public double getThroughput() {
+            return size / (mean * 1000.0);
+        }
+    }
+
+    private static class TextSink implements ResultSink {
+
+        private final PrintStream stream;
+        private boolean header = true;
+
+        TextSink(PrintStream stream) {
+            this.stream = stream;
+        }
+
+        public void result(Result result) {
+            printHeader();
+            stream.printf("%-32s %-28s %10d %4d %9.3f ms %9.3f ms %9.3f ms %9.3f ms %9.1f Me/s\n",
+                    result.workload, shorten(result.device), result.size, result.samples.length,
+                    result.mean, result.stddev, result.min, result.median, result.getThroughput());
+        }
+
+        public void skipped(Workload workload, CLDevice device, String reason) {
+            printHeader();
+            stream.printf("%-32s %-28s %10d   skipped: %s\n", workload.getName(), shorten(device.getName()), workload.getSize(), reason);
+        }
+
+        private void printHeader() {
+            if(header) {
+                stream.printf("%-32s %-28s %10s %4s %12s %12s %12s %12s %14s\n",
+                        "Workload", "Device", "Size", "Cnt", "Mean", "StdDev", "Min", "Median", "Throughput");
+                header = false;
+            }
+        }
+
+        private static String shorten(String name) {
+            name = name.trim();
+            return name.length() > 28 ? name.substring(0, 28) : name;
+        }
+
+        public void close() {
+            stream.flush();
+            if(stream != out) {
+                stream.close();
+            }
+        }
+    }
+
+    private static class CSVSink implements ResultSink {
+
+        private final PrintStream stream;
+
+        CSVSink(PrintStream stream) {
+            this.stream = stream;
+            stream.println("workload,device,size,samples,mean_ms,stddev_ms,min_ms,median_ms,throughput_me_s");
+        }
+
+        public void result(Result result) {
+            stream.printf(Locale.ROOT, "%s,\"%s\",%d,%d,%.4f,%.4f,%.4f,%.4f,%.2f\n",
+                    result.workload, result.device.trim(), result.size, result.samples.length,
+                    result.mean, result.stddev, result.min, result.median, result.getThroughput());
+        }
+
+        public void skipped(Workload workload, CLDevice device, String reason) {
+            stream.printf(Locale.ROOT, "%s,\"%s\",%d,0,,,,,\n", workload.getName(), device.getName().trim(), workload.getSize());
+        }
+
+        public void close() {
+            stream.flush();
+            if(stream != out) {
+                stream.close();
+            }
+        }
+    }
+
+}
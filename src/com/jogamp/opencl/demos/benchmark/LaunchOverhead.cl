@@ -0,0 +1,13 @@
+
+//----------------------------------------------------------------------------
+// Kernels without work, their cost is the launch itself.
+//----------------------------------------------------------------------------
+
+__kernel void empty()
+{
+}
+
+// same launch with one buffer argument, as most real kernels have
+__kernel void emptyWithArg(__global int* data)
+{
+}
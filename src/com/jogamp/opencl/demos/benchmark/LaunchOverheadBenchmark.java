@@ -0,0 +1,227 @@
+package com.jogamp.opencl.demos.benchmark;
+
+import com.jogamp.opencl.CLBuffer;
+import com.jogamp.opencl.CLCommandQueue;
+import com.jogamp.opencl.CLContext;
+import com.jogamp.opencl.CLDevice;
+import com.jogamp.opencl.CLEvent;
+import com.jogamp.opencl.CLEventList;
+import com.jogamp.opencl.CLException;
+import com.jogamp.opencl.CLKernel;
+import com.jogamp.opencl.CLPlatform;
+import com.jogamp.opencl.CLProgram;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+import static java.lang.System.*;
+import static com.jogamp.opencl.CLMemory.Mem.*;
+import static com.jogamp.opencl.CLEvent.ProfilingCommand.*;
+
+/**
+ * Cost of launching kernels which do no work, per device of the platform.
+ * <ul>
+ * <li>enqueue: host time of one enqueue call and launches completed per second</li>
+ * <li>latency: queued to submit, submit to start and start to end of isolated launches (profiling events)</li>
+ * <li>round trip: <code>finish()</code> on an idle queue and a launch followed by <code>finish()</code></li>
+ * <li>in-order vs. out-of-order: the same batch of independent launches on both queue types</li>
+ * </ul>
+ * Many microsecond sized launches (e.g. the merge stages of <code>BitonicSort</code>) are worth fusing
+ * if their kernel time is in the range of these numbers.
+ * <p>
+ * args:<br/>
+ * --launches=10000 --samples=200 --warmup=100 (launches before the measurement)<br/>
+ * and the device selection of the {@link BenchmarkRunner}, e.g. --device=0 or --type=GPU
+ * (all devices of the platform by default)<br/>
+ * </p>
+ */
+public class LaunchOverheadBenchmark {
+
+    private static int LAUNCHES = 10000;
+    private static int SAMPLES = 200;
+    private static int WARMUP = 100;
+
+    private final CLCommandQueue queue;
+    private final CLKernel empty;
+    private final CLKernel emptyWithArg;
+    private final CLBuffer<IntBuffer> buffer;
+
+    public LaunchOverheadBenchmark(CLCommandQueue queue, CLProgram program) {
+        this.queue = queue;
+        this.buffer = queue.getContext().createIntBuffer(1, READ_WRITE);
+        this.empty = program.createCLKernel("empty");
+        this.emptyWithArg = program.createCLKernel("emptyWithArg").putArg(buffer);
+    }
+
+    public static void main(String[] args) throws IOException {
+
+        BenchmarkRunner runner = BenchmarkRunner.create(args);
+        // launch counts are given with --launches and --samples, results are printed only
+        runner.rejectArgs("--size", "--repetitions", "--output", "--file");
+        WARMUP = runner.getWarmup(WARMUP);
+
+        for (String arg : runner.getArgs()) {
+            if(arg.startsWith("--launches=")) {
+                LAUNCHES = Integer.parseInt(arg.substring(11));
+            }else if(arg.startsWith("--samples=")) {
+                SAMPLES = Integer.parseInt(arg.substring(10));
+            }else{
+                out.println("unknown arg: "+arg);
+                exit(1);
+            }
+        }
+
+        CLPlatform platform = runner.getPlatform();
+        CLContext context = CLContext.create(runner.getDevices(CLDevice.Type.ALL));
+        try{
+            CLProgram program = context.createProgram(LaunchOverheadBenchmark.class.getResourceAsStream("LaunchOverhead.cl")).build();
+
+            out.println();
+            out.println(platform);
+            out.println("launches: "+LAUNCHES+", latency samples: "+SAMPLES);
+            out.println();
+
+            for (CLDevice device : context.getDevices()) {
+                out.println(device);
+                CLCommandQueue queue = device.createCommandQueue(CLCommandQueue.Mode.PROFILING_MODE);
+                LaunchOverheadBenchmark benchmark = new LaunchOverheadBenchmark(queue, program);
+                try{
+                    benchmark.run();
+                }finally{
+                    benchmark.release();
+                    queue.release();
+                }
+                out.println();
+            }
+        }finally{
+            context.release();
+        }
+    }
+
+    public void run() {
+        // warmup, first launches include lazy initialization of the runtime
+        for (int i = 0; i < WARMUP; i++) {
+            launch(queue, empty, null);
+        }
+        queue.finish();
+
+        enqueueThroughput("empty", empty);
+        enqueueThroughput("empty(arg)", emptyWithArg);
+        latency();
+        roundTrip();
+        queueOrder();
+    }
+
+    private void enqueueThroughput(String name, CLKernel kernel) {
+
+        long time = nanoTime();
+        for (int i = 0; i < LAUNCHES; i++) {
+            launch(queue, kernel, null);
+        }
+        long enqueued = nanoTime() - time;
+        queue.finish();
+        long completed = nanoTime() - time;
+
+        out.printf("   %-28s %10.2f us/launch enqueue %12.0f launches/s\n", "enqueue "+name,
+                enqueued / 1000.0 / LAUNCHES, LAUNCHES / (completed / 1000000000.0));
+    }
+
+    private void latency() {
+
+        long[] queuedToSubmit = new long[SAMPLES];
+        long[] submitToStart = new long[SAMPLES];
+        long[] startToEnd = new long[SAMPLES];
+
+        CLEventList events = new CLEventList(1);
+        for (int i = 0; i < SAMPLES; i++) {
+            launch(queue, empty, events);
+            queue.finish();
+
+            CLEvent event = events.getEvent(0);
+            long queued = event.getProfilingInfo(QUEUED);
+            long submit = event.getProfilingInfo(SUBMIT);
+            long start  = event.getProfilingInfo(START);
+            long end    = event.getProfilingInfo(END);
+            queuedToSubmit[i] = submit - queued;
+            submitToStart[i]  = start - submit;
+            startToEnd[i]     = end - start;
+
+            events.release();
+        }
+
+        printMedian("queued -> submit", queuedToSubmit);
+        printMedian("submit -> start", submitToStart);
+        printMedian("start -> end", startToEnd);
+    }
+
+    private void roundTrip() {
+
+        long[] idle = new long[SAMPLES];
+        long[] launch = new long[SAMPLES];
+
+        for (int i = 0; i < SAMPLES; i++) {
+            long time = nanoTime();
+            queue.finish();
+            idle[i] = nanoTime() - time;
+
+            time = nanoTime();
+            launch(queue, empty, null);
+            queue.finish();
+            launch[i] = nanoTime() - time;
+        }
+
+        printMedian("finish (idle queue)", idle);
+        printMedian("launch + finish", launch);
+    }
+
+    private void queueOrder() {
+
+        long inOrder = batch(queue);
+
+        CLCommandQueue outOfOrder;
+        try{
+            outOfOrder = queue.getDevice().createCommandQueue(CLCommandQueue.Mode.OUT_OF_ORDER_MODE);
+        }catch(CLException ex) {
+            out.printf("   %-28s %10.2f us/launch, out-of-order not supported\n", "in-order batch", inOrder / 1000.0 / LAUNCHES);
+            return;
+        }
+        try{
+            long unordered = batch(outOfOrder);
+            out.printf("   %-28s %10.2f us/launch\n", "in-order batch", inOrder / 1000.0 / LAUNCHES);
+            out.printf("   %-28s %10.2f us/launch (%.2fx)\n", "out-of-order batch", unordered / 1000.0 / LAUNCHES, inOrder / (double)unordered);
+        }finally{
+            outOfOrder.release();
+        }
+    }
+
+    // independent launches until all completed
+    private long batch(CLCommandQueue target) {
+        target.finish();
+        long time = nanoTime();
+        for (int i = 0; i < LAUNCHES; i++) {
+            launch(target, empty, null);
+        }
+        target.finish();
+        return nanoTime() - time;
+    }
+
+    private static void launch(CLCommandQueue target, CLKernel kernel, CLEventList events) {
+        if(events == null) {
+            target.put1DRangeKernel(kernel, 0, 1, 1);
+        }else{
+            target.put1DRangeKernel(kernel, 0, 1, 1, events);
+        }
+    }
+
+    private static void printMedian(String name, long[] samples) {
+        Arrays.sort(samples);
+        out.printf("   %-28s %10.2f us median %10.2f us min\n", name, samples[samples.length / 2] / 1000.0, samples[0] / 1000.0);
+    }
+
+    public void release() {
+        empty.release();
+        emptyWithArg.release();
+        buffer.release();
+    }
+
+}
@@ -0,0 +1,113 @@
+
+//----------------------------------------------------------------------------
+// Memory throughput kernels as seen from the device.
+//
+// copy, scale, add and triad follow the STREAM benchmark, strided and gather
+// read with a stride or through a random permutation. All of them operate on
+// vec_t, a float vector of VECTOR_WIDTH components.
+//
+// localAccess and constantAccess are scalar and measure local memory bank
+// conflicts and constant memory broadcast vs. divergent reads. imageRead reads
+// float4 texels through the image path.
+//
+// Passed down by clBuildProgram:
+// VECTOR_WIDTH   1, 2, 4, 8 or 16
+//----------------------------------------------------------------------------
+
+#if VECTOR_WIDTH == 1
+    typedef float   vec_t;
+#elif VECTOR_WIDTH == 2
+    typedef float2  vec_t;
+#elif VECTOR_WIDTH == 4
+    typedef float4  vec_t;
+#elif VECTOR_WIDTH == 8
+    typedef float8  vec_t;
+#elif VECTOR_WIDTH == 16
+    typedef float16 vec_t;
+#endif
+
+__kernel void copy(__global const vec_t* a, __global vec_t* c)
+{
+    uint i = get_global_id(0);
+    c[i] = a[i];
+}
+
+__kernel void scale(__global vec_t* b, __global const vec_t* c, float scalar)
+{
+    uint i = get_global_id(0);
+    b[i] = scalar * c[i];
+}
+
+__kernel void add(__global const vec_t* a, __global const vec_t* b, __global vec_t* c)
+{
+    uint i = get_global_id(0);
+    c[i] = a[i] + b[i];
+}
+
+__kernel void triad(__global vec_t* a, __global const vec_t* b, __global const vec_t* c, float scalar)
+{
+    uint i = get_global_id(0);
+    a[i] = b[i] + scalar * c[i];
+}
+
+// n must be a power of two, neighbouring work-items read 'stride' vectors apart
+__kernel void strided(__global const vec_t* in, __global vec_t* out, uint stride, uint n)
+{
+    uint i = get_global_id(0);
+    out[i] = in[(i * stride) & (n - 1)];
+}
+
+__kernel void gather(__global const vec_t* in, __global const uint* indices, __global vec_t* out)
+{
+    uint i = get_global_id(0);
+    out[i] = in[indices[i]];
+}
+
+// every work-item reads and writes its own word 'lid * stride' of the local buffer
+// (local size * stride words), strides which are a multiple of the bank count
+// serialize the whole group. volatile keeps the compiler from holding the word in a
+// register, every repeat has to load and store local memory
+__kernel void localAccess(__global float* out, uint stride, uint repeats, volatile __local float* scratch)
+{
+    uint lid = get_local_id(0);
+    uint index = lid * stride;
+
+    scratch[index] = lid;
+    barrier(CLK_LOCAL_MEM_FENCE);
+
+    float sum = 0;
+    for(uint r = 0; r < repeats; r++)
+    {
+        sum += scratch[index];
+        scratch[index] = sum;
+    }
+    barrier(CLK_LOCAL_MEM_FENCE);
+
+    out[get_global_id(0)] = sum;
+}
+
+// uniform: all work-items read the same word (broadcast), otherwise every work-item its own
+__kernel void constantAccess(__constant float* table, __global float* out, uint tableSize, uint repeats, uint uniform)
+{
+    uint lid = get_local_id(0);
+    uint index = uniform ? 0 : lid % tableSize;
+
+    float sum = 0;
+    for(uint r = 0; r < repeats; r++)
+    {
+        sum += table[index];
+        index = (index + 1) % tableSize;
+    }
+
+    out[get_global_id(0)] = sum;
+}
+
+__constant sampler_t texelSampler = CLK_NORMALIZED_COORDS_FALSE | CLK_ADDRESS_CLAMP_TO_EDGE | CLK_FILTER_NEAREST;
+
+// one texel per work-item, row by row, the same access pattern as copy with float4
+__kernel void imageRead(__read_only image2d_t image, __global float4* out)
+{
+    uint i = get_global_id(0);
+    int2 coord = (int2)(i % get_image_width(image), i / get_image_width(image));
+    out[i] = read_imagef(image, texelSampler, coord);
+}
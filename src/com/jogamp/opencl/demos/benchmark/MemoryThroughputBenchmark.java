@@ -0,0 +1,359 @@
+package com.jogamp.opencl.demos.benchmark;
+
+import com.jogamp.common.nio.Buffers;
+import com.jogamp.opencl.CLBuffer;
+import com.jogamp.opencl.CLCommandQueue;
+import com.jogamp.opencl.CLContext;
+import com.jogamp.opencl.CLDevice;
+import com.jogamp.opencl.CLEvent;
+import com.jogamp.opencl.CLEventList;
+import com.jogamp.opencl.CLImage2d;
+import com.jogamp.opencl.CLImageFormat;
+import com.jogamp.opencl.CLKernel;
+import com.jogamp.opencl.CLProgram;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static java.lang.System.*;
+import static com.jogamp.opencl.CLMemory.Mem.*;
+import static com.jogamp.opencl.CLProgram.*;
+import static com.jogamp.opencl.CLEvent.ProfilingCommand.*;
+
+/**
+ * Device memory throughput as seen by kernels, complementing the transfer numbers of
+ * <code>BandwidthBenchmark</code>.
+ * <p>
+ * For every vector width the STREAM kernels (copy, scale, add, triad), strided reads and
+ * a random gather are run over buffers of <code>--size</code> bytes. Local memory bank
+ * conflicts and constant memory broadcast vs. divergent reads are measured once with scalars,
+ * image reads once with float4 texels if the device supports images.
+ * Kernels are timed by their profiling events, bandwidth is computed from the median run
+ * and the bytes the kernel logically reads and writes.
+ * </p>
+ * <p>
+ * args:<br/>
+ * --widths=1,2,4,8,16<br/>
+ * and the args of the {@link BenchmarkRunner}, e.g. --size=33554432 --warmup=1 --repetitions=20 --device=0<br/>
+ * </p>
+ */
+public class MemoryThroughputBenchmark {
+
+    private static int WARMUP = 1;
+    private static int ITERATIONS = 20;
+    private static int DEFAULT_SIZE = (1 << 25);      // 32 MB per buffer
+    private static int[] VECTOR_WIDTHS = {1, 2, 4, 8, 16};
+    private static int[] STRIDES = {1, 2, 4, 8, 16, 32, 64};
+
+    // 33 is coprime to every bank count and should be conflict free
+    private static int[] LOCAL_STRIDES = {1, 2, 4, 8, 16, 32, 33};
+    private static final int LOCAL_REPEATS = 1024;
+    private static final int CONSTANT_REPEATS = 1024;
+    private static final int CONSTANT_TABLE_SIZE = 1024;
+    private static final int IMAGE_WIDTH = 4096;
+
+    private static final int GROUPS_PER_COMPUTE_UNIT = 8;
+    private static final long SEED = 42;
+
+    private final CLCommandQueue queue;
+    private final CLContext context;
+    private final CLDevice device;
+
+    public MemoryThroughputBenchmark(CLCommandQueue queue) {
+        this.queue = queue;
+        this.context = queue.getContext();
+        this.device = queue.getDevice();
+    }
+
+    public static void main(String[] args) throws IOException {
+
+        BenchmarkRunner runner = BenchmarkRunner.create(args);
+
+        int size = runner.getSize(DEFAULT_SIZE);
+        // results are printed only
+        runner.rejectArgs("--output", "--file");
+        WARMUP = runner.getWarmup(WARMUP);
+        ITERATIONS = runner.getRepetitions(ITERATIONS);
+        int[] widths = VECTOR_WIDTHS;
+
+        for (String arg : runner.getArgs()) {
+            if(arg.startsWith("--widths=")) {
+                String[] values = arg.substring(9).split(",");
+                widths = new int[values.length];
+                for (int i = 0; i < values.length; i++) {
+                    widths[i] = Integer.parseInt(values[i]);
+                }
+            }else{
+                out.println("unknown arg: "+arg);
+                exit(1);
+            }
+        }
+
+        for (CLDevice device : runner.getDevices()) {
+            CLContext context = CLContext.create(device);
+            try{
+                CLCommandQueue queue = device.createCommandQueue(CLCommandQueue.Mode.PROFILING_MODE);
+
+                out.println();
+                out.println(runner.getPlatform());
+                out.println(device);
+                out.println();
+
+                MemoryThroughputBenchmark benchmark = new MemoryThroughputBenchmark(queue);
+                benchmark.runGlobal(size, widths);
+                benchmark.runLocal();
+                benchmark.runConstant();
+                benchmark.runImage(size);
+            }finally{
+                context.release();
+            }
+        }
+    }
+
+    /**
+     * STREAM, strided and gather kernels for every vector width.
+     */
+    public void runGlobal(int size, int[] widths) throws IOException {
+
+        // strided reads wrap around with a mask
+        long maxSize = Math.min(size, device.getMaxMemAllocSize());
+        int bytes = Integer.highestOneBit((int)maxSize);
+
+        out.println("global memory, "+bytes+" bytes per buffer");
+        printHeader("width");
+
+        CLBuffer<FloatBuffer> a = createFloats(bytes / 4, 1.0f);
+        CLBuffer<FloatBuffer> b = createFloats(bytes / 4, 2.0f);
+        CLBuffer<FloatBuffer> c = createFloats(bytes / 4, 0.5f);
+
+        try{
+            for (int width : widths) {
+
+                int n = bytes / (4 * width);
+
+                CLProgram program = context.createProgram(getClass().getResourceAsStream("MemoryThroughput.cl"))
+                                            .build(define("VECTOR_WIDTH", width));
+                try{
+                    CLKernel copy = program.createCLKernel("copy").putArgs(a, c);
+                    printResult("copy", "float"+suffix(width), 2L * bytes, measure(copy, n, 0));
+
+                    CLKernel scale = program.createCLKernel("scale").putArgs(b, c).putArg(3.0f);
+                    printResult("scale", "float"+suffix(width), 2L * bytes, measure(scale, n, 0));
+
+                    CLKernel add = program.createCLKernel("add").putArgs(a, b, c);
+                    printResult("add", "float"+suffix(width), 3L * bytes, measure(add, n, 0));
+
+                    CLKernel triad = program.createCLKernel("triad").putArgs(a, b, c).putArg(3.0f);
+                    printResult("triad", "float"+suffix(width), 3L * bytes, measure(triad, n, 0));
+
+                    CLKernel strided = program.createCLKernel("strided");
+                    for (int stride : STRIDES) {
+                        strided.putArgs(a, c).putArg(stride).putArg(n).rewind();
+                        printResult("strided "+stride, "float"+suffix(width), 2L * bytes, measure(strided, n, 0));
+                    }
+
+                    CLBuffer<IntBuffer> indices = createPermutation(n);
+                    try{
+                        CLKernel gather = program.createCLKernel("gather").putArgs(a, indices, c);
+                        printResult("gather", "float"+suffix(width), 2L * bytes + 4L * n, measure(gather, n, 0));
+                    }finally{
+                        indices.release();
+                    }
+                }finally{
+                    program.release();
+                }
+            }
+        }finally{
+            a.release();
+            b.release();
+            c.release();
+        }
+        out.println();
+    }
+
+    /**
+     * Local memory access with strides causing different degrees of bank conflicts.
+     */
+    public void runLocal() throws IOException {
+
+        CLProgram program = context.createProgram(getClass().getResourceAsStream("MemoryThroughput.cl"))
+                                    .build(define("VECTOR_WIDTH", 1));
+        try{
+            CLKernel kernel = program.createCLKernel("localAccess");
+
+            // every work-item owns stride words, the group size is the same for all strides
+            int maxStride = 0;
+            for (int stride : LOCAL_STRIDES) {
+                maxStride = Math.max(maxStride, stride);
+            }
+            long localWords = (device.getLocalMemSize() - kernel.getLocalMemorySize(device)) / 4 / maxStride;
+            int localSize = (int)Math.min(Math.min(256, kernel.getWorkGroupSize(device)), Long.highestOneBit(localWords));
+            int globalSize = localSize * device.getMaxComputeUnits() * GROUPS_PER_COMPUTE_UNIT;
+
+            CLBuffer<FloatBuffer> result = context.createFloatBuffer(globalSize, WRITE_ONLY);
+            try{
+                out.println("local memory, work-group size "+localSize);
+                printHeader("stride");
+                for (int stride : LOCAL_STRIDES) {
+                    kernel.putArg(result).putArg(stride).putArg(LOCAL_REPEATS).putArgSize(4 * localSize * stride).rewind();
+                    // one read and one write per repeat
+                    long bytes = 2L * 4 * LOCAL_REPEATS * globalSize;
+                    printResult("local", String.valueOf(stride), bytes, measure(kernel, globalSize, localSize));
+                }
+            }finally{
+                result.release();
+            }
+        }finally{
+            program.release();
+        }
+        out.println();
+    }
+
+    /**
+     * Constant memory reads, every work-item of a group reading the same word vs. a different one.
+     */
+    public void runConstant() throws IOException {
+
+        CLProgram program = context.createProgram(getClass().getResourceAsStream("MemoryThroughput.cl"))
+                                    .build(define("VECTOR_WIDTH", 1));
+        try{
+            CLKernel kernel = program.createCLKernel("constantAccess");
+            int localSize = (int)Math.min(256, kernel.getWorkGroupSize(device));
+            int globalSize = localSize * device.getMaxComputeUnits() * GROUPS_PER_COMPUTE_UNIT;
+
+            CLBuffer<FloatBuffer> table = createFloats(CONSTANT_TABLE_SIZE, 1.0f);
+            CLBuffer<FloatBuffer> result = context.createFloatBuffer(globalSize, WRITE_ONLY);
+            try{
+                out.println("constant memory, "+CONSTANT_TABLE_SIZE * 4+" bytes table");
+                printHeader("access");
+                long bytes = 4L * CONSTANT_REPEATS * globalSize;
+                for (int uniform = 1; uniform >= 0; uniform--) {
+                    kernel.putArg(table).putArg(result).putArg(CONSTANT_TABLE_SIZE).putArg(CONSTANT_REPEATS).putArg(uniform).rewind();
+                    printResult("constant", uniform == 1 ? "broadcast" : "divergent", bytes, measure(kernel, globalSize, localSize));
+                }
+            }finally{
+                table.release();
+                result.release();
+            }
+        }finally{
+            program.release();
+        }
+        out.println();
+    }
+
+    /**
+     * Image reads of float4 texels, compare with copy at width 4.
+     */
+    public void runImage(int size) throws IOException {
+
+        if(!device.isImageSupportAvailable()) {
+            out.println("image memory not supported");
+            out.println();
+            return;
+        }
+
+        int width = Math.min(IMAGE_WIDTH, device.getMaxImage2dWidth());
+        long maxSize = Math.min(size, device.getMaxMemAllocSize());
+        int height = (int)Math.min(maxSize / (16L * width), device.getMaxImage2dHeight());
+        int texels = width * height;
+
+        CLProgram program = context.createProgram(getClass().getResourceAsStream("MemoryThroughput.cl"))
+                                    .build(define("VECTOR_WIDTH", 4));
+        FloatBuffer texelData = Buffers.newDirectFloatBuffer(4 * texels);
+        while(texelData.remaining() != 0) {
+            texelData.put(1.0f);
+        }
+        texelData.rewind();
+
+        CLImage2d<FloatBuffer> image = context.createImage2d(texelData, width, height,
+                new CLImageFormat(CLImageFormat.ChannelOrder.RGBA, CLImageFormat.ChannelType.FLOAT), READ_ONLY);
+        CLBuffer<FloatBuffer> result = context.createFloatBuffer(4 * texels, WRITE_ONLY);
+        try{
+            queue.putWriteImage(image, true);
+
+            out.println("image memory, "+width+"x"+height+" float4 texels");
+            printHeader("format");
+            CLKernel kernel = program.createCLKernel("imageRead").putArgs(image, result);
+            printResult("image", "rgba float", 2L * 16 * texels, measure(kernel, texels, 0));
+        }finally{
+            image.release();
+            result.release();
+            program.release();
+        }
+        out.println();
+    }
+
+    /**
+     * Runs the kernel WARMUP times for warmup and returns the sorted kernel durations in ns.
+     */
+    private long[] measure(CLKernel kernel, int globalSize, int localSize) {
+
+        for (int i = 0; i < WARMUP; i++) {
+            queue.put1DRangeKernel(kernel, 0, globalSize, localSize);
+        }
+        queue.finish();
+
+        CLEventList events = new CLEventList(ITERATIONS);
+        for (int i = 0; i < ITERATIONS; i++) {
+            queue.put1DRangeKernel(kernel, 0, globalSize, localSize, events);
+        }
+        queue.finish();
+
+        long[] durations = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            CLEvent event = events.getEvent(i);
+            durations[i] = event.getProfilingInfo(END) - event.getProfilingInfo(START);
+        }
+        events.release();
+
+        Arrays.sort(durations);
+        return durations;
+    }
+
+    private static void printHeader(String parameter) {
+        out.printf("   %-12s %-10s %14s %14s %12s\n", "kernel", parameter, "median GB/s", "peak GB/s", "median us");
+    }
+
+    private static void printResult(String name, String parameter, long bytes, long[] sorted) {
+        long median = sorted[sorted.length / 2];
+        long best = sorted[0];
+        out.printf("   %-12s %-10s %14.2f %14.2f %12.1f\n", name, parameter,
+                bytes / (double)median, bytes / (double)best, median / 1000.0);
+    }
+
+    private static String suffix(int width) {
+        return width == 1 ? "" : String.valueOf(width);
+    }
+
+    private CLBuffer<FloatBuffer> createFloats(int size, float value) {
+        CLBuffer<FloatBuffer> buffer = context.createFloatBuffer(size, READ_WRITE);
+        FloatBuffer data = buffer.getBuffer();
+        while(data.remaining() != 0) {
+            data.put(value);
+        }
+        data.rewind();
+        queue.putWriteBuffer(buffer, true);
+        return buffer;
+    }
+
+    private CLBuffer<IntBuffer> createPermutation(int n) {
+        int[] permutation = new int[n];
+        for (int i = 0; i < n; i++) {
+            permutation[i] = i;
+        }
+        Random random = new Random(SEED);
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = permutation[i];
+            permutation[i] = permutation[j];
+            permutation[j] = tmp;
+        }
+        CLBuffer<IntBuffer> buffer = context.createIntBuffer(n, READ_ONLY);
+        buffer.getBuffer().put(permutation).rewind();
+        queue.putWriteBuffer(buffer, true);
+        return buffer;
+    }
+
+}
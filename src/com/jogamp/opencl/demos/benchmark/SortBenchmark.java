@@ -0,0 +1,272 @@
+package com.jogamp.opencl.demos.benchmark;
+
+import com.jogamp.opencl.CLBuffer;
+import com.jogamp.opencl.CLCommandQueue;
+import com.jogamp.opencl.demos.benchmark.BenchmarkRunner.Workload;
+import com.jogamp.opencl.demos.bitonicsort.BitonicSortWorkload;
+import com.jogamp.opencl.demos.radixsort.RadixSortWorkload;
+import com.jogamp.opencl.demos.radixsort.Scan;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static java.lang.System.*;
+import static com.jogamp.opencl.CLMemory.Mem.*;
+
+/**
+ * Benchmark suite for the sorting and scan primitives.
+ * Every (benchmark, distribution, size) point is one {@link Workload} measured by the
+ * {@link BenchmarkRunner} the way JMH does it in average time mode: the workload is set up
+ * once (program build and buffer allocation are never timed), a number of warmup iterations
+ * is discarded and the measurement iterations are reported as ms/op. Input upload happens
+ * before each iteration and is excluded as well, only the primitive itself and a
+ * <code>finish()</code> are timed.
+ * <p>
+ * args:<br/>
+ * --benchmarks=RADIX_SORT,SCAN,BITONIC_SORT,ARRAYS_SORT,ARRAYS_PARALLEL_SORT<br/>
+ * --distributions=UNIFORM,SORTED,REVERSED,FEW_UNIQUE<br/>
+ * --sizes=65536,1048576<br/>
+ * and the args of the {@link BenchmarkRunner}, e.g. --warmup=5 --repetitions=10 --device=0<br/>
+ * </p>
+ */
+public class SortBenchmark {
+
+    private static int[] DEFAULT_SIZES = {65536, 262144, 1048576, 4194304};
+
+    private static final int FEW_UNIQUE_VALUES = 16;
+    private static final long SEED = 42;
+
+    private enum BENCHMARK { RADIX_SORT, SCAN, BITONIC_SORT, ARRAYS_SORT, ARRAYS_PARALLEL_SORT };
+    private enum DISTRIBUTION { UNIFORM, SORTED, REVERSED, FEW_UNIQUE };
+
+    public static void main(String[] args) throws IOException {
+
+        BenchmarkRunner runner = BenchmarkRunner.create(args);
+
+        List<BENCHMARK> benchmarks = Arrays.asList(BENCHMARK.values());
+        List<DISTRIBUTION> distributions = Arrays.asList(DISTRIBUTION.values());
+        int[] sizes = DEFAULT_SIZES;
+
+        for (String arg : runner.getArgs()) {
+            if(arg.startsWith("--benchmarks=")) {
+                benchmarks = new ArrayList<BENCHMARK>();
+                for (String name : arg.substring(13).split(",")) {
+                    benchmarks.add(BENCHMARK.valueOf(name.toUpperCase()));
+                }
+            }else if(arg.startsWith("--distributions=")) {
+                distributions = new ArrayList<DISTRIBUTION>();
+                for (String name : arg.substring(16).split(",")) {
+                    distributions.add(DISTRIBUTION.valueOf(name.toUpperCase()));
+                }
+            }else if(arg.startsWith("--sizes=")) {
+                String[] values = arg.substring(8).split(",");
+                sizes = new int[values.length];
+                for (int i = 0; i < values.length; i++) {
+                    sizes[i] = Integer.parseInt(values[i]);
+                }
+            }else{
+                out.println("unknown arg: "+arg);
+                exit(1);
+            }
+        }
+
+        // the input of a (distribution, size) point is shared by all benchmarks
+        List<Workload> workloads = new ArrayList<Workload>();
+        for (int size : sizes) {
+            for (DISTRIBUTION distribution : distributions) {
+                int[] data = generate(distribution, size);
+                for (BENCHMARK benchmark : benchmarks) {
+                    String name = benchmark.name().toLowerCase()+"/"+distribution.name().toLowerCase();
+                    workloads.add(createWorkload(benchmark, name, data));
+                }
+            }
+        }
+        runner.run(workloads.toArray(new Workload[workloads.size()]));
+    }
+
+    private static int[] generate(DISTRIBUTION distribution, int size) {
+
+        Random random = new Random(SEED);
+        int[] data = new int[size];
+
+        switch (distribution) {
+            case UNIFORM:
+                for (int i = 0; i < size; i++) {
+                    data[i] = random.nextInt(Integer.MAX_VALUE);
+                }
+                break;
+            case SORTED:
+            case REVERSED:
+                for (int i = 0; i < size; i++) {
+                    data[i] = random.nextInt(Integer.MAX_VALUE);
+                }
+                Arrays.sort(data);
+                if(distribution == DISTRIBUTION.REVERSED) {
+                    for (int i = 0; i < size / 2; i++) {
+                        int tmp = data[i];
+                        data[i] = data[size - 1 - i];
+                        data[size - 1 - i] = tmp;
+                    }
+                }
+                break;
+            case FEW_UNIQUE:
+                for (int i = 0; i < size; i++) {
+                    data[i] = random.nextInt(FEW_UNIQUE_VALUES) * (Integer.MAX_VALUE / FEW_UNIQUE_VALUES);
+                }
+                break;
+        }
+        return data;
+    }
+
+    private static Workload createWorkload(BENCHMARK benchmark, String name, int[] data) {
+        switch (benchmark) {
+            case RADIX_SORT:
+                return new RadixSortWorkload(name, data);
+            case SCAN:
+                return new ScanWorkload(name, data);
+            case BITONIC_SORT:
+                return new BitonicSortWorkload(name, data);
+            case ARRAYS_SORT:
+                return new HostSortWorkload(name, data, false);
+            case ARRAYS_PARALLEL_SORT:
+                return new HostSortWorkload(name, data, true);
+            default:
+                throw new IllegalArgumentException(benchmark.name());
+        }
+    }
+
+    private static boolean isPowerOf2(int x) {
+        return x > 0 && ((x - 1) & x) == 0;
+    }
+
+    /**
+     * Batched exclusive scan of the input, arrays of at most MAX_ARRAY_LENGTH elements.
+     */
+    private static class ScanWorkload implements Workload {
+
+        private static final int MAX_ARRAY_LENGTH = 4 * 256 * 256;
+
+        private final String name;
+        private final int[] data;
+
+        private CLCommandQueue queue;
+        private Scan scan;
+        private CLBuffer<IntBuffer> keys;
+        private CLBuffer<IntBuffer> result;
+        private int batch;
+        private int arrayLength;
+
+        ScanWorkload(String name, int[] data) {
+            this.name = name;
+            this.data = data;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getSize() {
+            return data.length;
+        }
+
+        public void setup(CLCommandQueue queue) throws IOException {
+            if(!isPowerOf2(data.length) || data.length < 8 * 256) {
+                throw new BenchmarkRunner.UnsupportedSizeException("size must be a power of two >= "+8 * 256);
+            }
+            this.queue = queue;
+            arrayLength = Math.min(data.length, MAX_ARRAY_LENGTH);
+            batch = data.length / arrayLength;
+            keys = queue.getContext().createIntBuffer(data.length, READ_ONLY);
+            result = queue.getContext().createIntBuffer(data.length, READ_WRITE);
+            scan = new Scan(queue, data.length);
+        }
+
+        public void reset() {
+            keys.getBuffer().put(data).rewind();
+            queue.putWriteBuffer(keys, true);
+        }
+
+        public void run() {
+            scan.scanExclusiveLarge(result, keys, batch, arrayLength);
+            queue.finish();
+        }
+
+        public void verify() {
+            queue.putReadBuffer(result, true);
+            IntBuffer sums = result.getBuffer();
+            int sum = 0;
+            for (int i = 0; i < data.length; i++) {
+                if(i % arrayLength == 0) {
+                    sum = 0;
+                }
+                if(sums.get(i) != sum) {
+                    throw new RuntimeException("wrong prefix sum at "+i+": "+sums.get(i)+" != "+sum);
+                }
+                sum += data[i];
+            }
+        }
+
+        public void release() {
+            scan.release();
+            keys.release();
+            result.release();
+        }
+    }
+
+    /**
+     * Arrays.sort or Arrays.parallelSort on the host as reference.
+     */
+    private static class HostSortWorkload implements Workload {
+
+        private final String name;
+        private final int[] data;
+        private final boolean parallel;
+        private int[] keys;
+
+        HostSortWorkload(String name, int[] data, boolean parallel) {
+            this.name = name;
+            this.data = data;
+            this.parallel = parallel;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getSize() {
+            return data.length;
+        }
+
+        public void setup(CLCommandQueue queue) {
+            keys = new int[data.length];
+        }
+
+        public void reset() {
+            arraycopy(data, 0, keys, 0, data.length);
+        }
+
+        public void run() {
+            if(parallel) {
+                Arrays.parallelSort(keys);
+            }else{
+                Arrays.sort(keys);
+            }
+        }
+
+        public void verify() {
+            for (int i = 1; i < keys.length; i++) {
+                if (keys[i - 1] > keys[i]) {
+                    throw new RuntimeException("not sorted "+ keys[i - 1] +" !> "+ keys[i]);
+                }
+            }
+        }
+
+        public void release() {
+            keys = null;
+        }
+    }
+
+}
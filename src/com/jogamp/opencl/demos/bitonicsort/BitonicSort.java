@@ -9,6 +9,7 @@ import com.jogamp.opencl.CLContext;
 import com.jogamp.opencl.CLDevice;
 import com.jogamp.opencl.CLKernel;
 import com.jogamp.opencl.CLProgram;
+import com.jogamp.opencl.demos.benchmark.BenchmarkRunner;
 import java.io.IOException;
 import java.nio.IntBuffer;
 import java.util.Map;
@@ -21,6 +22,7 @@ import static com.jogamp.opencl.CLProgram.*;
 /**
  * Bitonic sort optimized for GPUs.
  * Uses NVIDIA's bitonic merge sort kernel.
+ * <code>--benchmark</code> runs the sort through the {@link BenchmarkRunner} instead of the demo.
  * @author Michael Bien
  */
 public class BitonicSort {
@@ -32,6 +34,14 @@ public class BitonicSort {
 
     private final static int LOCAL_SIZE_LIMIT = 1024;
     private final Map<String, CLKernel> kernels;
+    private CLProgram program;
+
+    /**
+     * Creates a sorter for the given queue without running the demo.
+     */
+    public BitonicSort(CLCommandQueue queue) throws IOException {
+        kernels = initBitonicSort(queue);
+    }
 
     public BitonicSort() throws IOException {
 
@@ -91,16 +101,13 @@ public class BitonicSort {
     
     private Map<String, CLKernel> initBitonicSort(CLCommandQueue queue) throws IOException {
 
-        out.println("    creating bitonic sort program");
-
         CLContext context = queue.getContext();
 
-        CLProgram program = context.createProgram(getClass().getResourceAsStream("BitonicSort.cl"))
-                                   .build(define("LOCAL_SIZE_LIMIT", LOCAL_SIZE_LIMIT));
+        program = context.createProgram(getClass().getResourceAsStream("BitonicSort.cl"))
+                         .build(define("LOCAL_SIZE_LIMIT", LOCAL_SIZE_LIMIT));
 
         Map<String, CLKernel> kernelMap = program.createCLKernels();
 
-        out.println("    checking minimum supported workgroup size");
         //Check for work group size
         CLDevice device = queue.getDevice();
         long szBitonicSortLocal  = kernelMap.get(BITONIC_SORT_LOCAL).getWorkGroupSize(device);
@@ -118,6 +125,13 @@ public class BitonicSort {
 
     }
 
+    /**
+     * Releases the program and its kernels.
+     */
+    public void release() {
+        program.release();
+    }
+
     public void bitonicSort(CLCommandQueue queue, CLBuffer<?> dstKey, CLBuffer<?> srcKey, int batch, int arrayLength, int dir) {
 
         if (arrayLength < 2) {
@@ -196,6 +210,12 @@ public class BitonicSort {
     }
 
     public static void main(String[] args) throws IOException {
-        new BitonicSort();
+        if(BenchmarkRunner.isRequested(args)) {
+            BenchmarkRunner runner = BenchmarkRunner.create(args);
+            runner.checkArgs();
+            runner.run(new BitonicSortWorkload(runner.getSize(BitonicSortWorkload.DEFAULT_SIZE)));
+        }else{
+            new BitonicSort();
+        }
     }
 }
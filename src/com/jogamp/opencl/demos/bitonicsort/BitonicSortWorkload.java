@@ -0,0 +1,95 @@
+package com.jogamp.opencl.demos.bitonicsort;
+
+import com.jogamp.opencl.CLBuffer;
+import com.jogamp.opencl.CLCommandQueue;
+import com.jogamp.opencl.demos.benchmark.BenchmarkRunner;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.util.Random;
+
+import static com.jogamp.opencl.CLMemory.Mem.*;
+
+/**
+ * {@link BitonicSort} of one power of two sized array as benchmark workload. The keys are
+ * uploaded before every run, only the sort is timed.
+ */
+public class BitonicSortWorkload implements BenchmarkRunner.Workload {
+
+    public static final int DEFAULT_SIZE = 1048576;
+
+    // one work-group of the local sort
+    private static final int MIN_SIZE = 1024;
+
+    private final String name;
+    private final int size;
+    private final int[] data;
+
+    private CLCommandQueue queue;
+    private CLBuffer<IntBuffer> keys;
+    private BitonicSort bitonicSort;
+
+    public BitonicSortWorkload(int size) {
+        this("bitonic_sort", random(size));
+    }
+
+    /**
+     * Sorts a copy of the given keys, the name identifies the input in the results.
+     */
+    public BitonicSortWorkload(String name, int[] data) {
+        this.name = name;
+        this.size = data.length;
+        this.data = data;
+    }
+
+    private static int[] random(int size) {
+        int[] data = new int[size];
+        Random random = new Random(42);
+        for (int i = 0; i < size; i++) {
+            data[i] = random.nextInt(1000000);
+        }
+        return data;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setup(CLCommandQueue queue) throws IOException {
+        if(size < MIN_SIZE || (size & (size - 1)) != 0) {
+            throw new BenchmarkRunner.UnsupportedSizeException("size must be a power of two >= "+MIN_SIZE);
+        }
+        this.queue = queue;
+        bitonicSort = new BitonicSort(queue);
+        keys = queue.getContext().createIntBuffer(size, READ_WRITE);
+    }
+
+    public void reset() {
+        keys.getBuffer().put(data).rewind();
+        queue.putWriteBuffer(keys, true);
+    }
+
+    public void run() {
+        bitonicSort.bitonicSort(queue, keys, keys, 1, size, 1);
+        queue.finish();
+    }
+
+    public void verify() {
+        queue.putReadBuffer(keys, true);
+        IntBuffer sorted = keys.getBuffer();
+        for (int i = 1; i < size; i++) {
+            if (sorted.get(i - 1) > sorted.get(i)) {
+                throw new RuntimeException("not sorted "+ sorted.get(i - 1) +"!> "+ sorted.get(i));
+            }
+        }
+    }
+
+    public void release() {
+        keys.release();
+        bitonicSort.release();
+    }
+
+}
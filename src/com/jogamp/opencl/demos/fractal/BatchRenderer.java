@@ -0,0 +1,408 @@
+package com.jogamp.opencl.demos.fractal;
+
+import com.jogamp.opencl.CLBuffer;
+import com.jogamp.opencl.CLCommandQueue;
+import com.jogamp.opencl.CLDevice;
+import com.jogamp.opencl.CLEventList;
+import com.jogamp.opencl.CLPlatform;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.lang.System.*;
+import static java.lang.Math.*;
+import static com.jogamp.opencl.CLMemory.Mem.*;
+import static com.jogamp.opencl.CLEvent.ProfilingCommand.*;
+import static com.jogamp.opencl.CLCommandQueue.Mode.*;
+
+/**
+ * Renders an animation along a path of keyframes with the kernels of {@link HeadlessFractal}.
+ * <p>
+ * The frames are rendered into a ring of device buffers. The kernels run on the queue of the
+ * fractal, the readback on a second queue which waits for the kernel of its frame. This way the
+ * readback of a frame overlaps with the kernel of the next one. Finished frames are encoded and
+ * written by a background thread, a buffer returns to the ring once its frame is on disk.
+ * </p>
+ * <p>
+ * args:<br/>
+ * --path=path.txt keyframes, one "frame x y range" per line<br/>
+ * or --x=-0.7 --y=0 --range=2.6 --frames=100 --zoom=0.9 for a straight zoom<br/>
+ * --ring=4 number of frame buffers<br/>
+ * --width, --height, --iterations, --double, --no-early-exit, --vector-width, --platform,
+ * --device, --type as in {@link HeadlessFractal}<br/>
+ * --output=frame%04d.png<br/>
+ * </p>
+ */
+public class BatchRenderer {
+
+    private final HeadlessFractal fractal;
+    private final CLCommandQueue transfer;
+    private final CLBuffer<IntBuffer>[] ring;
+
+    private long kernelTime;
+
+    /**
+     * @param ringSize number of frame buffers, at least two.
+     */
+    @SuppressWarnings("unchecked")
+    public BatchRenderer(HeadlessFractal fractal, int ringSize) {
+
+        if(ringSize < 2) {
+            throw new IllegalArgumentException("ring size must be at least 2 but was "+ringSize);
+        }
+
+        this.fractal = fractal;
+        this.transfer = fractal.getDevice().createCommandQueue(PROFILING_MODE);
+
+        int pixels = fractal.getWidth() * fractal.getHeight();
+        ring = new CLBuffer[ringSize];
+        for (int i = 0; i < ring.length; i++) {
+            ring[i] = fractal.getContext().createIntBuffer(pixels, WRITE_ONLY);
+        }
+    }
+
+    /**
+     * Renders the frames of the path and writes them to files named after the pattern,
+     * see {@link String#format}. Blocks until the last frame is written.
+     */
+    public void render(List<Keyframe> path, String pattern) throws IOException {
+
+        if(path.isEmpty()) {
+            throw new IllegalArgumentException("empty path");
+        }
+
+        double aspect = fractal.getHeight() / (double)fractal.getWidth();
+
+        final BlockingQueue<Integer> free = new ArrayBlockingQueue<Integer>(ring.length);
+        for (int i = 0; i < ring.length; i++) {
+            free.add(i);
+        }
+
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        List<Future<?>> written = new ArrayList<Future<?>>();
+        kernelTime = 0;
+
+        Frame frame = null;
+        Frame previous = null;
+
+        try{
+            int frames = path.get(path.size()-1).frame + 1;
+
+            for (int n = 0; n < frames; n++) {
+
+                Keyframe view = interpolate(path, n);
+                int slot = take(free);
+
+                frame = new Frame(n, slot);
+                fractal.enqueue(ring[slot], view.x - view.range/2, view.y - view.range*aspect/2,
+                                            view.x + view.range/2, view.y + view.range*aspect/2, frame.computed);
+                fractal.getQueue().flush();
+
+                transfer.putReadBuffer(ring[slot], false, frame.computed, frame.read).flush();
+
+                // the device is busy with this frame while we wait for the last one
+                if(previous != null) {
+                    written.add(finish(previous, pattern, free, writer));
+                }
+                previous = frame;
+
+                // fail fast if the writer can not keep up due to an error
+                if(written.size() > 0 && written.get(0).isDone()) {
+                    get(written.remove(0));
+                }
+            }
+            written.add(finish(previous, pattern, free, writer));
+
+            for (Future<?> future : written) {
+                get(future);
+            }
+        }finally{
+            // on failure kernels and reads may still be running, they must not outlive the events
+            fractal.getQueue().finish();
+            transfer.finish();
+            if(frame != null) {
+                frame.release();
+            }
+            if(previous != null) {
+                previous.release();
+            }
+            writer.shutdown();
+        }
+    }
+
+    // waits for the readback of the frame and hands it to the writer
+    private Future<?> finish(final Frame frame, String pattern, final BlockingQueue<Integer> free, ExecutorService writer) {
+
+        frame.read.waitForEvents();
+        kernelTime += frame.computed.getEvent(0).getProfilingInfo(END) - frame.computed.getEvent(0).getProfilingInfo(START);
+        frame.release();
+
+        final File file = new File(String.format(pattern, frame.number));
+        return writer.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                try{
+                    HeadlessFractal.write(ring[frame.slot].getBuffer(), fractal.getWidth(), fractal.getHeight(), file);
+                }finally{
+                    free.add(frame.slot);
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Summed kernel time of the last {@link #render} call in ns.
+     */
+    public long getKernelTime() {
+        return kernelTime;
+    }
+
+    public void release() {
+        for (CLBuffer<IntBuffer> buffer : ring) {
+            buffer.release();
+        }
+        transfer.release();
+    }
+
+    /**
+     * The view of the frame. The range is interpolated exponentially between the keyframes,
+     * the center moves in proportion to the change of the range. Most of the way is covered
+     * while the view is still wide, which keeps the next center on screen while zooming in.
+     */
+    static Keyframe interpolate(List<Keyframe> path, int frame) {
+
+        Keyframe a = path.get(0);
+        if(frame <= a.frame) {
+            return a;
+        }
+        for (Keyframe b : path.subList(1, path.size())) {
+            if(frame <= b.frame) {
+                double t = (frame - a.frame) / (double)(b.frame - a.frame);
+                double range = a.range * pow(b.range / a.range, t);
+                double w = a.range == b.range ? t : (a.range - range) / (a.range - b.range);
+                return new Keyframe(frame, a.x + (b.x - a.x) * w, a.y + (b.y - a.y) * w, range);
+            }
+            a = b;
+        }
+        return a;
+    }
+
+    /**
+     * Reads a path of "frame x y range" lines, lines starting with # are ignored.
+     */
+    static List<Keyframe> readPath(File file) throws IOException {
+
+        List<Keyframe> path = new ArrayList<Keyframe>();
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try{
+            String line;
+            while((line = reader.readLine()) != null) {
+                line = line.trim();
+                if(line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] values = line.split("\\s+");
+                if(values.length != 4) {
+                    throw new IOException("expected 'frame x y range' but got: "+line);
+                }
+                Keyframe keyframe = new Keyframe(Integer.parseInt(values[0]), Double.parseDouble(values[1]),
+                                                 Double.parseDouble(values[2]), Double.parseDouble(values[3]));
+                if(!path.isEmpty() && keyframe.frame <= path.get(path.size()-1).frame) {
+                    throw new IOException("keyframes must be in frame order: "+line);
+                }
+                path.add(keyframe);
+            }
+        }finally{
+            reader.close();
+        }
+        return path;
+    }
+
+    private static int take(BlockingQueue<Integer> free) {
+        try {
+            return free.take();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private static void get(Future<?> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        } catch (ExecutionException ex) {
+            if(ex.getCause() instanceof IOException) {
+                throw (IOException)ex.getCause();
+            }
+            throw new RuntimeException(ex.getCause());
+        }
+    }
+
+    /**
+     * Center and width of the view at a frame.
+     */
+    public static class Keyframe {
+
+        public final int frame;
+        public final double x;
+        public final double y;
+        public final double range;
+
+        public Keyframe(int frame, double x, double y, double range) {
+            this.frame = frame;
+            this.x = x;
+            this.y = y;
+            this.range = range;
+        }
+    }
+
+    // a frame in flight and its events
+    private static class Frame {
+
+        final int number;
+        final int slot;
+        final CLEventList computed = new CLEventList(1);
+        final CLEventList read = new CLEventList(1);
+        private boolean released;
+
+        Frame(int number, int slot) {
+            this.number = number;
+            this.slot = slot;
+        }
+
+        // releases the events once, the frame may be released by finish and on failure
+        void release() {
+            if(!released) {
+                released = true;
+                computed.release();
+                read.release();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+
+        int width = 1024;
+        int height = 1024;
+        double x = -0.7;
+        double y = 0;
+        double range = 2.6;
+        int frames = 100;
+        double zoom = 0.9;
+        String pathFile = null;
+        int ringSize = 4;
+        int iterations = 500;
+        boolean doublePrecision = false;
+        boolean earlyExit = true;
+        int vectorWidth = 0;
+        int platformIndex = -1;
+        int deviceIndex = -1;
+        CLDevice.Type type = null;
+        String output = "frame%04d.png";
+
+        for (String arg : args) {
+            if(arg.startsWith("--width=")) {
+                width = Integer.parseInt(arg.substring(8));
+            }else if(arg.startsWith("--height=")) {
+                height = Integer.parseInt(arg.substring(9));
+            }else if(arg.startsWith("--x=")) {
+                x = Double.parseDouble(arg.substring(4));
+            }else if(arg.startsWith("--y=")) {
+                y = Double.parseDouble(arg.substring(4));
+            }else if(arg.startsWith("--range=")) {
+                range = Double.parseDouble(arg.substring(8));
+            }else if(arg.startsWith("--frames=")) {
+                frames = Integer.parseInt(arg.substring(9));
+            }else if(arg.startsWith("--zoom=")) {
+                zoom = Double.parseDouble(arg.substring(7));
+            }else if(arg.startsWith("--path=")) {
+                pathFile = arg.substring(7);
+            }else if(arg.startsWith("--ring=")) {
+                ringSize = Integer.parseInt(arg.substring(7));
+            }else if(arg.startsWith("--iterations=")) {
+                iterations = Integer.parseInt(arg.substring(13));
+            }else if(arg.equals("--double")) {
+                doublePrecision = true;
+            }else if(arg.equals("--no-early-exit")) {
+                earlyExit = false;
+            }else if(arg.startsWith("--vector-width=")) {
+                vectorWidth = Integer.parseInt(arg.substring(15));
+            }else if(arg.startsWith("--platform=")) {
+                platformIndex = Integer.parseInt(arg.substring(11));
+            }else if(arg.startsWith("--device=")) {
+                deviceIndex = Integer.parseInt(arg.substring(9));
+            }else if(arg.startsWith("--type=")) {
+                type = CLDevice.Type.valueOf(arg.substring(7).toUpperCase());
+            }else if(arg.startsWith("--output=")) {
+                output = arg.substring(9);
+            }else{
+                out.println("unknown arg: "+arg);
+                exit(1);
+            }
+        }
+
+        if(String.format(output, 0).equals(output)) {
+            throw new IllegalArgumentException("--output needs a frame number pattern like frame%04d.png");
+        }
+
+        List<Keyframe> path;
+        if(pathFile != null) {
+            path = readPath(new File(pathFile));
+        }else{
+            path = new ArrayList<Keyframe>();
+            path.add(new Keyframe(0, x, y, range));
+            if(frames > 1) {
+                path.add(new Keyframe(frames-1, x, y, range * pow(zoom, frames-1)));
+            }
+        }
+
+        CLPlatform platform = platformIndex == -1 ? CLPlatform.getDefault() : CLPlatform.listCLPlatforms()[platformIndex];
+        CLDevice device;
+        if(deviceIndex != -1) {
+            device = platform.listCLDevices()[deviceIndex];
+        }else if(type != null) {
+            device = platform.getMaxFlopsDevice(type);
+        }else{
+            device = platform.getMaxFlopsDevice();
+        }
+
+        HeadlessFractal fractal = new HeadlessFractal(device, width, height, doublePrecision, earlyExit, vectorWidth);
+        try{
+            fractal.setMaxIterations(iterations);
+            BatchRenderer renderer = new BatchRenderer(fractal, ringSize);
+            try{
+                int count = path.get(path.size()-1).frame + 1;
+                out.println("rendering "+count+" frame(s) "+width+"x"+height+" on "+device.getName().trim()
+                        +" @"+(fractal.isDoublePrecision()?"64bit":fractal.isDoubleSingle()?"2x32bit":"32bit")
+                        +", "+ringSize+" buffers");
+
+                long time = nanoTime();
+                renderer.render(path, output);
+                time = nanoTime() - time;
+
+                out.printf("kernel %.2fms, total %.2fms, %.2f frames/s\n",
+                        renderer.getKernelTime()/1000000.0, time/1000000.0, count / (time/1000000000.0));
+            }finally{
+                renderer.release();
+            }
+        }finally{
+            fractal.release();
+        }
+    }
+
+}
@@ -0,0 +1,71 @@
+#ifdef AMD_FP
+    #pragma OPENCL EXTENSION cl_amd_fp64 : enable
+#else
+    #pragma OPENCL EXTENSION cl_khr_fp64 : enable
+#endif
+
+inline double2 cmul(double2 a, double2 b) {
+    return (double2)(a.x*b.x - a.y*b.y, a.x*b.y + a.y*b.x);
+}
+
+/**
+ * Perturbation theory Mandelbrot. Every pixel iterates its (small) distance dz to a high
+ * precision reference orbit which was computed on the host:
+ * dz' = 2*Z*dz + dz^2 + dc with the pixel at z = Z + dz.
+ * The first skip iterations are replaced by the series approximation dz = a*dc + b*dc^2 + c*dc^3.
+ * The pixel is rebased on the start of the orbit (dz = z) when it gets closer to zero than
+ * its delta or when the reference orbit ends, which avoids perturbation glitches.
+ */
+kernel void perturbation(
+        const int width,        const int height,
+        const double scale,
+        global const double2 *orbit, const int orbitLength,
+        const int skip,
+        const double ax, const double ay,
+        const double bx, const double by,
+        const double cx, const double cy,
+        global uint *output,    global const uint *colorMap,
+        const int colorMapSize, const int maxIterations) {
+
+    unsigned int ix = get_global_id(0);
+    unsigned int iy = get_global_id(1);
+
+    // offset of the pixel to the reference at the center of the image
+    double2 dc = (double2)((ix + 0.5 - width*0.5) * scale, (iy + 0.5 - height*0.5) * scale);
+
+    double2 dc2 = cmul(dc, dc);
+    double2 dz = cmul((double2)(ax, ay), dc)
+               + cmul((double2)(bx, by), dc2)
+               + cmul((double2)(cx, cy), cmul(dc2, dc));
+
+    int n = skip;
+    int iteration = skip;
+
+    while (iteration < maxIterations) {
+
+        dz = 2 * cmul(orbit[n], dz) + cmul(dz, dz) + dc;
+        n++;
+        iteration++;
+
+        double2 z = orbit[n] + dz;
+        double magnitudeSquared = dot(z, z);
+
+        if (magnitudeSquared > 4) {
+            break;
+        }
+
+        if (magnitudeSquared < dot(dz, dz) || n == orbitLength-1) {
+            dz = z;
+            n = 0;
+        }
+    }
+
+    if (iteration == maxIterations)  {
+        output[iy * width + ix] = 0;
+    }else {
+        double alpha = (double)iteration / maxIterations;
+        int colorIndex = (int)(alpha * colorMapSize);
+        output[iy * width + ix] = colorMap[colorIndex];
+    }
+
+}
@@ -0,0 +1,287 @@
+package com.jogamp.opencl.demos.fractal;
+
+import com.jogamp.opencl.CLBuffer;
+import com.jogamp.opencl.CLCommandQueue;
+import com.jogamp.opencl.CLContext;
+import com.jogamp.opencl.CLDevice;
+import com.jogamp.opencl.CLEvent;
+import com.jogamp.opencl.CLEventList;
+import com.jogamp.opencl.CLKernel;
+import com.jogamp.opencl.CLPlatform;
+import com.jogamp.opencl.CLProgram;
+import com.jogamp.opencl.CLProgram.CompilerOptions;
+import com.jogamp.opencl.util.CLProgramConfiguration;
+import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+
+import static java.lang.System.*;
+import static java.lang.Math.*;
+import static com.jogamp.opencl.CLMemory.Mem.*;
+import static com.jogamp.opencl.CLEvent.ProfilingCommand.*;
+import static com.jogamp.opencl.CLCommandQueue.Mode.*;
+
+/**
+ * Headless deep zoom renderer based on perturbation theory (<code>DeepZoom.cl</code>).
+ * Only the reference orbit at the center of the image is computed in arbitrary precision on the
+ * host (see {@link ReferenceOrbit}), the pixels iterate their double precision distance to it on
+ * the device. This reaches ranges far below the ~1e-14 limit of <code>Mandelbrot.cl</code>,
+ * down to the exponent range of double. The image is computed in tiles, one kernel each, which
+ * keeps single launches short at high iteration counts.
+ * <p>
+ * args:<br/>
+ * --width=1024 --height=1024<br/>
+ * --x=... --y=... center as decimal of any precision, --range=1e-20 width of the view<br/>
+ * --frames=1 --zoom=0.5 --iterations=5000<br/>
+ * --platform=0 --device=0 or --type=CPU|GPU<br/>
+ * --output=deepzoom.png or a frame pattern like frame%04d.png<br/>
+ * </p>
+ * Requires 64bit floating point support.
+ */
+public class DeepZoomFractal {
+
+    // edge length of a tile in pixels
+    private static final int TILE_SIZE = 256;
+
+    private static final int COLOR_MAP_SIZE = 32*2;
+
+    private final CLContext context;
+    private final CLCommandQueue queue;
+    private final CLKernel kernel;
+
+    private final CLBuffer<IntBuffer> pixels;
+    private final CLBuffer<IntBuffer> colorMap;
+    private CLBuffer<DoubleBuffer> orbitBuffer;
+
+    private final int width;
+    private final int height;
+
+    private ReferenceOrbit orbit;
+    private int maxIterations = 5000;
+
+    private long kernelTime;
+    private int skipped;
+
+    public DeepZoomFractal(CLDevice device, int width, int height) throws IOException {
+
+        if(!MultiDeviceFractal.isDoubleFPAvailable(device)) {
+            throw new IllegalArgumentException(device.getName()+" does not support 64bit floating point math");
+        }
+
+        this.width = width;
+        this.height = height;
+
+        context = CLContext.create(device);
+        try{
+            queue = device.createCommandQueue(PROFILING_MODE);
+
+            colorMap = context.createIntBuffer(COLOR_MAP_SIZE, READ_ONLY);
+            MultiDeviceFractal.initColorMap(colorMap.getBuffer(), COLOR_MAP_SIZE/2, Color.BLUE, Color.GREEN, Color.RED);
+            queue.putWriteBuffer(colorMap, true);
+
+            pixels = context.createIntBuffer(width*height, WRITE_ONLY);
+
+            CLProgram program = context.createProgram(getClass().getResourceAsStream("DeepZoom.cl"));
+            CLProgramConfiguration configure = program.prepare();
+            if(!device.isDoubleFPAvailable()) {
+                configure.withDefine("AMD_FP");
+            }
+            configure.withOption(CompilerOptions.FAST_RELAXED_MATH).build();
+
+            kernel = program.createCLKernel("perturbation");
+        }catch(IOException ex) {
+            context.release();
+            throw ex;
+        }catch(RuntimeException ex) {
+            context.release();
+            throw ex;
+        }
+    }
+
+    /**
+     * Computes the reference orbit for a view centered at x+yi. The orbit can be reused for all
+     * ranges down to minRange.
+     */
+    public void setCenter(BigDecimal x, BigDecimal y, double minRange) {
+
+        orbit = new ReferenceOrbit(x, y, maxIterations, ReferenceOrbit.digitsFor(minRange, max(width, height)));
+
+        int length = orbit.getLength();
+        if(orbitBuffer == null || orbitBuffer.getCLCapacity() < 2*length) {
+            if(orbitBuffer != null) {
+                orbitBuffer.release();
+            }
+            orbitBuffer = context.createDoubleBuffer(2*length, READ_ONLY);
+        }
+        orbitBuffer.getBuffer().clear();
+        orbitBuffer.getBuffer().put(orbit.getOrbit()).rewind();
+        queue.putWriteBuffer(orbitBuffer, true);
+    }
+
+    /**
+     * Renders the view of the given width around the center and returns the pixels,
+     * the first row is the bottom of the view. The buffer is reused by the next call.
+     */
+    public IntBuffer render(double range) {
+
+        if(orbit == null) {
+            throw new IllegalStateException("no center set");
+        }
+
+        double scale = range / width;
+        ReferenceOrbit.Series series = orbit.approximate(scale * width / 2, scale * height / 2, maxIterations);
+        skipped = series.skip;
+
+        kernel.putArg(width).putArg(height)
+              .putArg(scale)
+              .putArg(orbitBuffer).putArg(orbit.getLength())
+              .putArg(series.skip)
+              .putArg(series.ax).putArg(series.ay)
+              .putArg(series.bx).putArg(series.by)
+              .putArg(series.cx).putArg(series.cy)
+              .putArg(pixels).putArg(colorMap)
+              .putArg(COLOR_MAP_SIZE).putArg(maxIterations)
+              .rewind();
+
+        int tilesX = (width + TILE_SIZE - 1) / TILE_SIZE;
+        int tilesY = (height + TILE_SIZE - 1) / TILE_SIZE;
+
+        CLEventList probes = new CLEventList(tilesX * tilesY);
+        for (int y = 0; y < height; y += TILE_SIZE) {
+            for (int x = 0; x < width; x += TILE_SIZE) {
+                queue.put2DRangeKernel(kernel, x, y, min(TILE_SIZE, width - x), min(TILE_SIZE, height - y), 0, 0, probes);
+            }
+        }
+        queue.putReadBuffer(pixels, true);
+
+        kernelTime = 0;
+        for (CLEvent probe : probes) {
+            kernelTime += probe.getProfilingInfo(END) - probe.getProfilingInfo(START);
+        }
+        probes.release();
+
+        return pixels.getBuffer();
+    }
+
+    public void setMaxIterations(int maxIterations) {
+        this.maxIterations = maxIterations;
+    }
+
+    /**
+     * Kernel time of the last frame in ns.
+     */
+    public long getKernelTime() {
+        return kernelTime;
+    }
+
+    /**
+     * Iterations skipped by the series approximation in the last frame.
+     */
+    public int getSkippedIterations() {
+        return skipped;
+    }
+
+    /**
+     * Length of the current reference orbit.
+     */
+    public int getOrbitLength() {
+        return orbit == null ? 0 : orbit.getLength();
+    }
+
+    public void release() {
+        context.release();
+    }
+
+    public static void main(String[] args) throws IOException {
+
+        int width = 1024;
+        int height = 1024;
+        // seahorse valley
+        BigDecimal x = new BigDecimal("-0.743643887037158704752191506114774");
+        BigDecimal y = new BigDecimal("0.131825904205311970493132056385139");
+        double range = 1e-20;
+        int frames = 1;
+        double zoom = 0.5;
+        int iterations = 5000;
+        int platformIndex = -1;
+        int deviceIndex = -1;
+        CLDevice.Type type = null;
+        String output = "deepzoom.png";
+
+        for (String arg : args) {
+            if(arg.startsWith("--width=")) {
+                width = Integer.parseInt(arg.substring(8));
+            }else if(arg.startsWith("--height=")) {
+                height = Integer.parseInt(arg.substring(9));
+            }else if(arg.startsWith("--x=")) {
+                x = new BigDecimal(arg.substring(4));
+            }else if(arg.startsWith("--y=")) {
+                y = new BigDecimal(arg.substring(4));
+            }else if(arg.startsWith("--range=")) {
+                range = Double.parseDouble(arg.substring(8));
+            }else if(arg.startsWith("--frames=")) {
+                frames = Integer.parseInt(arg.substring(9));
+            }else if(arg.startsWith("--zoom=")) {
+                zoom = Double.parseDouble(arg.substring(7));
+            }else if(arg.startsWith("--iterations=")) {
+                iterations = Integer.parseInt(arg.substring(13));
+            }else if(arg.startsWith("--platform=")) {
+                platformIndex = Integer.parseInt(arg.substring(11));
+            }else if(arg.startsWith("--device=")) {
+                deviceIndex = Integer.parseInt(arg.substring(9));
+            }else if(arg.startsWith("--type=")) {
+                type = CLDevice.Type.valueOf(arg.substring(7).toUpperCase());
+            }else if(arg.startsWith("--output=")) {
+                output = arg.substring(9);
+            }else{
+                out.println("unknown arg: "+arg);
+                exit(1);
+            }
+        }
+
+        if(frames > 1 && String.format(output, 0).equals(output)) {
+            throw new IllegalArgumentException("--output needs a frame number pattern like frame%04d.png for more than one frame");
+        }
+
+        CLPlatform platform = platformIndex == -1 ? CLPlatform.getDefault() : CLPlatform.listCLPlatforms()[platformIndex];
+        CLDevice device;
+        if(deviceIndex != -1) {
+            device = platform.listCLDevices()[deviceIndex];
+        }else if(type != null) {
+            device = platform.getMaxFlopsDevice(type);
+        }else{
+            device = platform.getMaxFlopsDevice();
+        }
+
+        DeepZoomFractal fractal = new DeepZoomFractal(device, width, height);
+        try{
+            fractal.setMaxIterations(iterations);
+
+            // one orbit, precise enough for the deepest frame
+            long time = nanoTime();
+            fractal.setCenter(x, y, range * pow(zoom, frames-1));
+            out.printf("reference orbit: %d iterations in %.2fms\n", fractal.getOrbitLength()-1, (nanoTime()-time)/1000000.0);
+
+            for (int frame = 0; frame < frames; frame++) {
+
+                time = nanoTime();
+                IntBuffer pixels = fractal.render(range);
+                long renderTime = nanoTime() - time;
+
+                String file = frames > 1 ? String.format(output, frame) : output;
+                HeadlessFractal.write(pixels, width, height, new File(file));
+
+                out.printf("%s: kernel %.2fms, frame %.2fms, skipped %d iterations, range %g\n",
+                        file, fractal.getKernelTime()/1000000.0, renderTime/1000000.0, fractal.getSkippedIterations(), range);
+
+                range *= zoom;
+            }
+        }finally{
+            fractal.release();
+        }
+    }
+
+}
@@ -0,0 +1,432 @@
+package com.jogamp.opencl.demos.fractal;
+
+import com.jogamp.opencl.CLBuffer;
+import com.jogamp.opencl.CLCommandQueue;
+import com.jogamp.opencl.CLContext;
+import com.jogamp.opencl.CLDevice;
+import com.jogamp.opencl.CLEvent;
+import com.jogamp.opencl.CLEventList;
+import com.jogamp.opencl.CLKernel;
+import com.jogamp.opencl.CLPlatform;
+import com.jogamp.opencl.CLProgram;
+import com.jogamp.opencl.CLProgram.CompilerOptions;
+import com.jogamp.opencl.util.CLProgramConfiguration;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import javax.imageio.ImageIO;
+
+import static java.lang.System.*;
+import static com.jogamp.opencl.CLMemory.Mem.*;
+import static com.jogamp.opencl.CLEvent.ProfilingCommand.*;
+import static com.jogamp.opencl.CLCommandQueue.Mode.*;
+
+/**
+ * Renders the Mandelbrot set with <code>Mandelbrot.cl</code> into a plain CLBuffer and
+ * writes the frames to disk. Requires neither a display nor GL interop and therefore
+ * runs on any OpenCL device, including CPU runtimes.
+ * <p>
+ * args:<br/>
+ * --width=1024 --height=1024 image size in pixels<br/>
+ * --x=-0.7 --y=0 --range=2.6 center and width of the view<br/>
+ * --frames=1 --zoom=0.9 renders a zoom sequence, each frame scales the range by zoom<br/>
+ * --iterations=500 --double, emulated with float pairs on devices without 64bit support<br/>
+ * --no-early-exit iterates points inside the set to the limit, for comparison<br/>
+ * --subdivide renders with Mariani-Silver subdivision<br/>
+ * --vector-width=4 pixels per work-item, default is the preferred vector width of the device, 1 disables<br/>
+ * --platform=0 --device=0 or --type=CPU|GPU<br/>
+ * --output=mandelbrot.png writes PNG or, for the .raw extension, 32bit BGRA pixels,
+ * top row first. Frame sequences need a pattern like frame%04d.png<br/>
+ * </p>
+ */
+public class HeadlessFractal {
+
+    // entries of the color map
+    private static final int COLOR_MAP_SIZE = 32*2;
+
+    private final CLContext context;
+    private final CLCommandQueue queue;
+    private final CLProgram program;
+    private final CLKernel kernel;
+    private final CLKernel vectorKernel;
+
+    private final CLBuffer<IntBuffer> pixels;
+    private final CLBuffer<IntBuffer> colorMap;
+
+    private final int width;
+    private final int height;
+    private final boolean doublePrecision;
+    private final boolean doubleSingle;
+    private final boolean earlyExit;
+    private final int vectorWidth;
+
+    private MarianiSilver subdivision;
+
+    private int maxIterations = 500;
+    private long kernelTime;
+
+    public HeadlessFractal(CLDevice device, int width, int height, boolean doublePrecision) throws IOException {
+        this(device, width, height, doublePrecision, true);
+    }
+
+    /**
+     * Uses the preferred vector width of the device.
+     * @param earlyExit enables the cardioid/bulb rejection and periodicity detection of the kernel.
+     */
+    public HeadlessFractal(CLDevice device, int width, int height, boolean doublePrecision, boolean earlyExit) throws IOException {
+        this(device, width, height, doublePrecision, earlyExit, 0);
+    }
+
+    /**
+     * @param earlyExit enables the cardioid/bulb rejection and periodicity detection of the kernel.
+     * @param vectorWidth pixels per work-item (2, 4 or 8), 1 for the scalar kernel or 0 for the
+     * preferred vector width of the device.
+     */
+    public HeadlessFractal(CLDevice device, int width, int height, boolean doublePrecision, boolean earlyExit, int vectorWidth) throws IOException {
+
+        if(vectorWidth != 0 && vectorWidth != 1 && vectorWidth != 2 && vectorWidth != 4 && vectorWidth != 8) {
+            throw new IllegalArgumentException("vector width must be 1, 2, 4 or 8 but was "+vectorWidth);
+        }
+
+        this.width = width;
+        this.height = height;
+        this.doublePrecision = doublePrecision && MultiDeviceFractal.isDoubleFPAvailable(device);
+        this.doubleSingle = doublePrecision && !this.doublePrecision;
+        this.earlyExit = earlyExit;
+        if(doubleSingle) {
+            // the double-single kernel is scalar only
+            this.vectorWidth = 1;
+        }else{
+            this.vectorWidth = vectorWidth == 0 ? MultiDeviceFractal.vectorWidth(device, this.doublePrecision) : vectorWidth;
+        }
+
+        context = CLContext.create(device);
+        try{
+            queue = device.createCommandQueue(PROFILING_MODE);
+
+            colorMap = context.createIntBuffer(COLOR_MAP_SIZE, READ_ONLY);
+            MultiDeviceFractal.initColorMap(colorMap.getBuffer(), COLOR_MAP_SIZE/2, Color.BLUE, Color.GREEN, Color.RED);
+            queue.putWriteBuffer(colorMap, true);
+
+            pixels = context.createIntBuffer(width*height, WRITE_ONLY);
+
+            program = context.createProgram(getClass().getResourceAsStream("Mandelbrot.cl"));
+            CLProgramConfiguration configure = program.prepare();
+            if(this.doublePrecision) {
+                configure.withDefine("DOUBLE_FP");
+                if(!device.isDoubleFPAvailable() && device.isExtensionAvailable("cl_amd_fp64")) {
+                    configure.withDefine("AMD_FP");
+                }
+            }else if(doubleSingle) {
+                configure.withDefine("DOUBLE_SINGLE");
+            }
+            if(earlyExit) {
+                configure.withDefine("EARLY_EXIT");
+            }
+            if(this.vectorWidth > 1) {
+                configure.withDefine("VECTOR_WIDTH", this.vectorWidth);
+            }
+            // relaxed math would optimize the error terms of double-single arithmetic away
+            if(!doubleSingle) {
+                configure.withOption(CompilerOptions.FAST_RELAXED_MATH);
+            }
+            configure.build();
+
+            kernel = program.createCLKernel(doubleSingle ? "mandelbrotDS" : "mandelbrot");
+            kernel.setForce32BitArgs(!this.doublePrecision)
+                  .setArg(7, colorMap)
+                  .setArg(8, COLOR_MAP_SIZE);
+
+            if(this.vectorWidth > 1) {
+                vectorKernel = program.createCLKernel("mandelbrotVector");
+                vectorKernel.setForce32BitArgs(!this.doublePrecision)
+                            .setArg(7, colorMap)
+                            .setArg(8, COLOR_MAP_SIZE)
+                            .setArg(10, 0)
+                            .setArg(11, width);
+            }else{
+                vectorKernel = null;
+            }
+        }catch(IOException ex) {
+            context.release();
+            throw ex;
+        }catch(RuntimeException ex) {
+            context.release();
+            throw ex;
+        }
+    }
+
+    /**
+     * Renders the given region and returns the pixels, the first row is minY.
+     * The buffer is reused by the next call.
+     */
+    public IntBuffer render(double minX, double minY, double maxX, double maxY) {
+
+        if(subdivision != null) {
+            subdivision.setConstants(!doublePrecision, pixels, colorMap, maxIterations);
+            subdivision.setView(minX, minY, maxX - minX, maxY - minY);
+            subdivision.clear();
+
+            CLEventList probes = new CLEventList(subdivision.getMaxEvents());
+            subdivision.render(TileScheduler.split(width, height), probes);
+            queue.putReadBuffer(pixels, true);
+
+            kernelTime = 0;
+            for (CLEvent probe : probes) {
+                kernelTime += probe.getProfilingInfo(END) - probe.getProfilingInfo(START);
+            }
+            probes.release();
+            return pixels.getBuffer();
+        }
+
+        CLEventList probe = new CLEventList(1);
+        enqueue(pixels, minX, minY, maxX, maxY, probe);
+        queue.putReadBuffer(pixels, true);
+
+        kernelTime = probe.getEvent(0).getProfilingInfo(END) - probe.getEvent(0).getProfilingInfo(START);
+        probe.release();
+
+        return pixels.getBuffer();
+    }
+
+    /**
+     * Enqueues the kernel for the given region into output without waiting for it.
+     * Subdivision is not used.
+     */
+    void enqueue(CLBuffer<IntBuffer> output, double minX, double minY, double maxX, double maxY, CLEventList events) {
+
+        CLKernel current = vectorKernel != null ? vectorKernel : kernel;
+        current.putArg( width).putArg( height)
+               .putArg(  minX).putArg(  minY)
+               .putArg(maxX - minX).putArg(maxY - minY)
+               .putArg(output)
+               .rewind();
+        current.setArg(9, maxIterations);
+        if(doubleSingle) {
+            current.setArg(10, MultiDeviceFractal.lowPart(minX)).setArg(11, MultiDeviceFractal.lowPart(minY))
+                   .setArg(12, MultiDeviceFractal.lowPart(maxX - minX)).setArg(13, MultiDeviceFractal.lowPart(maxY - minY));
+        }
+
+        // the vector kernel computes vectorWidth pixels of a row per work-item
+        int workItems = vectorKernel != null ? (width + vectorWidth - 1) / vectorWidth : width;
+
+        queue.put2DRangeKernel(current, 0, 0, workItems, height, 0, 0, events);
+    }
+
+    public void setMaxIterations(int maxIterations) {
+        this.maxIterations = maxIterations;
+    }
+
+    /**
+     * Enables Mariani-Silver subdivision, see {@link MarianiSilver}.
+     */
+    public void setSubdivision(boolean enabled) {
+        if(enabled && subdivision == null) {
+            subdivision = new MarianiSilver(context, program, queue, width, height,
+                                            TileScheduler.TILE_SIZE, TileScheduler.split(width, height).size());
+        }else if(!enabled && subdivision != null) {
+            subdivision.release();
+            subdivision = null;
+        }
+    }
+
+    /**
+     * Kernel time of the last frame in ns.
+     */
+    public long getKernelTime() {
+        return kernelTime;
+    }
+
+    public boolean isDoublePrecision() {
+        return doublePrecision;
+    }
+
+    /**
+     * True if 64bit precision was requested but is emulated with float pairs.
+     * Subdivision renders with 32bit precision in this case.
+     */
+    public boolean isDoubleSingle() {
+        return doubleSingle;
+    }
+
+    public boolean isEarlyExitEnabled() {
+        return earlyExit;
+    }
+
+    /**
+     * Pixels per work-item, 1 if the scalar kernel is used.
+     */
+    public int getVectorWidth() {
+        return vectorWidth;
+    }
+
+    public CLDevice getDevice() {
+        return queue.getDevice();
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    CLContext getContext() {
+        return context;
+    }
+
+    CLCommandQueue getQueue() {
+        return queue;
+    }
+
+    public void release() {
+        context.release();
+    }
+
+    /**
+     * Writes the pixels as PNG or, if the file ends with .raw, as 32bit BGRA values.
+     * The image is flipped so that maxY ends up in the first row.
+     */
+    public static void write(IntBuffer pixels, int width, int height, File file) throws IOException {
+        if(file.getName().endsWith(".raw")) {
+            writeRaw(pixels, width, height, file);
+        }else{
+            writePNG(pixels, width, height, file);
+        }
+    }
+
+    public static void writePNG(IntBuffer pixels, int width, int height, File file) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, height-1-y, pixels.get(y*width + x));
+            }
+        }
+        if(!ImageIO.write(image, "png", file)) {
+            throw new IOException("no PNG writer available");
+        }
+    }
+
+    public static void writeRaw(IntBuffer pixels, int width, int height, File file) throws IOException {
+        DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try{
+            for (int y = height-1; y >= 0; y--) {
+                for (int x = 0; x < width; x++) {
+                    // 0x00RRGGBB -> B G R A
+                    stream.writeInt(Integer.reverseBytes(pixels.get(y*width + x)));
+                }
+            }
+        }finally{
+            stream.close();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+
+        int width = 1024;
+        int height = 1024;
+        double x = -0.7;
+        double y = 0;
+        double range = 2.6;
+        int frames = 1;
+        double zoom = 0.9;
+        int iterations = 500;
+        boolean doublePrecision = false;
+        boolean earlyExit = true;
+        boolean subdivide = false;
+        int vectorWidth = 0;
+        int platformIndex = -1;
+        int deviceIndex = -1;
+        CLDevice.Type type = null;
+        String output = "mandelbrot.png";
+
+        for (String arg : args) {
+            if(arg.startsWith("--width=")) {
+                width = Integer.parseInt(arg.substring(8));
+            }else if(arg.startsWith("--height=")) {
+                height = Integer.parseInt(arg.substring(9));
+            }else if(arg.startsWith("--x=")) {
+                x = Double.parseDouble(arg.substring(4));
+            }else if(arg.startsWith("--y=")) {
+                y = Double.parseDouble(arg.substring(4));
+            }else if(arg.startsWith("--range=")) {
+                range = Double.parseDouble(arg.substring(8));
+            }else if(arg.startsWith("--frames=")) {
+                frames = Integer.parseInt(arg.substring(9));
+            }else if(arg.startsWith("--zoom=")) {
+                zoom = Double.parseDouble(arg.substring(7));
+            }else if(arg.startsWith("--iterations=")) {
+                iterations = Integer.parseInt(arg.substring(13));
+            }else if(arg.equals("--double")) {
+                doublePrecision = true;
+            }else if(arg.equals("--no-early-exit")) {
+                earlyExit = false;
+            }else if(arg.equals("--subdivide")) {
+                subdivide = true;
+            }else if(arg.startsWith("--vector-width=")) {
+                vectorWidth = Integer.parseInt(arg.substring(15));
+            }else if(arg.startsWith("--platform=")) {
+                platformIndex = Integer.parseInt(arg.substring(11));
+            }else if(arg.startsWith("--device=")) {
+                deviceIndex = Integer.parseInt(arg.substring(9));
+            }else if(arg.startsWith("--type=")) {
+                type = CLDevice.Type.valueOf(arg.substring(7).toUpperCase());
+            }else if(arg.startsWith("--output=")) {
+                output = arg.substring(9);
+            }else{
+                out.println("unknown arg: "+arg);
+                exit(1);
+            }
+        }
+
+        if(frames > 1 && String.format(output, 0).equals(output)) {
+            throw new IllegalArgumentException("--output needs a frame number pattern like frame%04d.png for more than one frame");
+        }
+
+        CLPlatform platform = platformIndex == -1 ? CLPlatform.getDefault() : CLPlatform.listCLPlatforms()[platformIndex];
+        CLDevice device;
+        if(deviceIndex != -1) {
+            device = platform.listCLDevices()[deviceIndex];
+        }else if(type != null) {
+            device = platform.getMaxFlopsDevice(type);
+        }else{
+            device = platform.getMaxFlopsDevice();
+        }
+
+        HeadlessFractal fractal = new HeadlessFractal(device, width, height, doublePrecision, earlyExit, vectorWidth);
+        try{
+            fractal.setMaxIterations(iterations);
+            fractal.setSubdivision(subdivide);
+            out.println("rendering "+frames+" frame(s) "+width+"x"+height+" on "+device.getName().trim()
+                    +" @"+(fractal.isDoublePrecision()?"64bit":fractal.isDoubleSingle()?"2x32bit":"32bit")
+                    +(fractal.isEarlyExitEnabled()?"":", no early exit")
+                    +(fractal.getVectorWidth() > 1 && !subdivide?", "+fractal.getVectorWidth()+" pixels per work-item":"")
+                    +(subdivide?", subdivided":""));
+
+            double aspect = height / (double)width;
+            for (int frame = 0; frame < frames; frame++) {
+
+                long time = nanoTime();
+                IntBuffer pixels = fractal.render(x - range/2, y - range*aspect/2, x + range/2, y + range*aspect/2);
+                long renderTime = nanoTime() - time;
+
+                String file = frames > 1 ? String.format(output, frame) : output;
+                write(pixels, width, height, new File(file));
+
+                out.printf("%s: kernel %.2fms, frame %.2fms, range %g\n",
+                        file, fractal.getKernelTime()/1000000.0, renderTime/1000000.0, range);
+
+                range *= zoom;
+            }
+        }finally{
+            fractal.release();
+        }
+    }
+
+}
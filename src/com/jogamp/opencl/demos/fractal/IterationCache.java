@@ -0,0 +1,122 @@
+package com.jogamp.opencl.demos.fractal;
+
+import com.jogamp.opencl.CLBuffer;
+import com.jogamp.opencl.CLCommandQueue;
+import com.jogamp.opencl.CLContext;
+import com.jogamp.opencl.CLEventList;
+import com.jogamp.opencl.CLKernel;
+import com.jogamp.opencl.CLProgram;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import static com.jogamp.opencl.CLMemory.Mem.*;
+
+/**
+ * Keeps the iteration count, the smooth fraction and the last orbit point of every pixel on the
+ * device (<code>iterateCached</code> and <code>recolor</code> of <code>Mandelbrot.cl</code>).
+ * A palette change only recolors the cached counts and raising the iteration limit only
+ * continues the orbits of the pixels which did not escape yet.
+ */
+class IterationCache {
+
+    enum Pass {
+        /** iterates all pixels of the tiles from scratch */
+        ITERATE,
+        /** continues the unresolved pixels up to the current iteration limit */
+        RESUME,
+        /** colors the cached counts again */
+        RECOLOR
+    }
+
+    private final CLCommandQueue queue;
+
+    private final CLKernel iterate;
+    private final CLKernel recolor;
+
+    private final CLBuffer<IntBuffer> counts;
+    private final CLBuffer<FloatBuffer> fractions;
+    private final CLBuffer<ByteBuffer> orbits;
+
+    private final int width;
+    private final int height;
+
+    /**
+     * @param doublePrecision true if the program was built with DOUBLE_FP, determines the size of the orbit points.
+     */
+    IterationCache(CLContext context, CLProgram program, CLCommandQueue queue, int width, int height, boolean doublePrecision) {
+
+        this.queue = queue;
+        this.width = width;
+        this.height = height;
+
+        iterate = program.createCLKernel("iterateCached");
+        recolor = program.createCLKernel("recolor");
+
+        counts    = context.createIntBuffer(width*height, READ_WRITE);
+        fractions = context.createFloatBuffer(width*height, READ_WRITE);
+        orbits    = context.createBuffer(width*height * 2 * (doublePrecision ? 8 : 4), READ_WRITE);
+
+        iterate.setArg(10, counts).setArg(11, fractions).setArg(12, orbits);
+        recolor.setArg(0, width).setArg(5, counts).setArg(6, fractions);
+    }
+
+    /**
+     * Sets the arguments which stay the same between frames.
+     */
+    void setConstants(boolean force32BitArgs, CLBuffer<?> output, CLBuffer<IntBuffer> colorMap, int maxIterations) {
+        iterate.setForce32BitArgs(force32BitArgs)
+               .setArg(6, output)
+               .setArg(7, colorMap)
+               .setArg(8, colorMap.getBuffer().capacity());
+        recolor.setArg(1, output)
+               .setArg(2, colorMap)
+               .setArg(3, colorMap.getBuffer().capacity());
+        setMaxIterations(maxIterations);
+    }
+
+    void setMaxIterations(int maxIterations) {
+        iterate.setArg(9, maxIterations);
+        recolor.setArg(4, maxIterations);
+    }
+
+    /**
+     * Enables coloring with the fractional iteration count, removes the color bands.
+     */
+    void setSmooth(boolean smooth) {
+        iterate.setArg(14, smooth ? 1 : 0);
+        recolor.setArg(7, smooth ? 1 : 0);
+    }
+
+    void setView(double minX, double minY, double rangeX, double rangeY) {
+        iterate.putArg( width).putArg(height)
+               .putArg(  minX).putArg(  minY)
+               .putArg(rangeX).putArg(rangeY)
+               .rewind();
+    }
+
+    /**
+     * Enqueues one kernel for the tile with a probe from the list.
+     */
+    void enqueue(TileScheduler.Tile tile, Pass pass, CLEventList probes) {
+        if(pass == Pass.RECOLOR) {
+            queue.put2DRangeKernel(recolor, tile.x, tile.y, tile.width, tile.height, 0, 0, probes);
+        }else{
+            iterate.setArg(13, pass == Pass.RESUME ? 1 : 0);
+            queue.put2DRangeKernel(iterate, tile.x, tile.y, tile.width, tile.height, 0, 0, probes);
+        }
+    }
+
+    void release() {
+        // the kernels are gone if the program was rebuilt
+        for (CLKernel kernel : new CLKernel[] {iterate, recolor}) {
+            if(!kernel.isReleased()) {
+                kernel.release();
+            }
+        }
+        counts.release();
+        fractions.release();
+        orbits.release();
+    }
+
+}
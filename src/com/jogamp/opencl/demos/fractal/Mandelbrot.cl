@@ -9,6 +9,124 @@
     typedef float varfloat;
 #endif
 
+// iteration count of points which are known to be inside of the set
+#define INSIDE -1
+
+/**
+ * Main cardioid and period-2 bulb, both are inside the set.
+ */
+inline bool inCardioidOrBulb(const varfloat r, const varfloat i) {
+    varfloat q = (r - 0.25f)*(r - 0.25f) + i*i;
+    return q*(q + (r - 0.25f)) <= 0.25f*i*i || (r + 1)*(r + 1) + i*i <= 0.0625f;
+}
+
+/**
+ * Continues the orbit of r+i*i at the point x+y*i after the given iterations. Returns the
+ * iteration count once the orbit escaped or maxIterations was reached, x and y hold the last point.
+ * With EARLY_EXIT defined orbits which run into a cycle are detected (Brent), INSIDE is returned
+ * for these points.
+ */
+inline int iterateFrom(const varfloat r, const varfloat i, varfloat *zx, varfloat *zy,
+                       int iteration, const int maxIterations, const varfloat epsilon) {
+
+    varfloat x = *zx;
+    varfloat y = *zy;
+
+    // the orbit did not escape before, or we would not be here
+    varfloat magnitudeSquared = 0;
+
+#ifdef EARLY_EXIT
+    // orbit saved at power of two steps, a cycle shorter than the distance will hit it
+    varfloat checkX = x;
+    varfloat checkY = y;
+    int checkLength = 1;
+    int steps = 0;
+#endif
+
+    while (magnitudeSquared < 4 && iteration < maxIterations) {
+        varfloat x2 = x*x;
+        varfloat y2 = y*y;
+        y = 2 * x * y + i;
+        x = x2 - y2 + r;
+        magnitudeSquared = x2+y2;
+        iteration++;
+
+#ifdef EARLY_EXIT
+        if (fabs(x - checkX) < epsilon && fabs(y - checkY) < epsilon) {
+            iteration = INSIDE;
+            break;
+        }
+        if (++steps == checkLength) {
+            steps = 0;
+            checkLength <<= 1;
+            checkX = x;
+            checkY = y;
+        }
+#endif
+    }
+
+    *zx = x;
+    *zy = y;
+    return iteration;
+}
+
+/**
+ * Iterates the point r+i*i, returns maxIterations for points inside the set.
+ * With EARLY_EXIT defined, points in the main cardioid and the period-2 bulb are rejected
+ * up front and orbits which run into a cycle are detected.
+ */
+inline int iterate(const varfloat r, const varfloat i, const int maxIterations, const varfloat epsilon) {
+
+#ifdef EARLY_EXIT
+    if (inCardioidOrBulb(r, i)) {
+        return maxIterations;
+    }
+#endif
+
+    varfloat x = 0;
+    varfloat y = 0;
+    int iteration = iterateFrom(r, i, &x, &y, 0, maxIterations, epsilon);
+    return iteration == INSIDE ? maxIterations : iteration;
+}
+
+inline uint color(const int iteration, const int maxIterations, global uint *colorMap, const int colorMapSize) {
+    if (iteration == maxIterations)  {
+        return 0;
+    }else {
+        varfloat alpha = (varfloat)iteration / maxIterations;
+        int colorIndex = (int)(alpha * colorMapSize);
+        return colorMap[colorIndex];
+      // monochrom
+      //  return 255*iteration/maxIterations;
+    }
+}
+
+/**
+ * Color of an escaped point with a smooth iteration count (fraction >= 0), interpolated
+ * between the color map entries. Points which did not escape are black.
+ */
+inline uint shade(const int iteration, const float fraction, const int maxIterations,
+                  global uint *colorMap, const int colorMapSize, const int smooth) {
+
+    if (iteration == INSIDE || fraction < 0) {
+        return 0;
+    }
+    if (!smooth) {
+        return color(iteration, maxIterations, colorMap, colorMapSize);
+    }
+
+    float position = (iteration + fraction) / maxIterations * colorMapSize;
+    int index = min((int)position, colorMapSize - 1);
+    uint a = colorMap[index];
+    uint b = colorMap[min(index + 1, colorMapSize - 1)];
+    float t = position - index;
+
+    uint red   = (uint)mix((float)((a >> 16) & 0xFF), (float)((b >> 16) & 0xFF), t);
+    uint green = (uint)mix((float)((a >>  8) & 0xFF), (float)((b >>  8) & 0xFF), t);
+    uint blue  = (uint)mix((float)( a        & 0xFF), (float)( b        & 0xFF), t);
+    return (red << 16) | (green << 8) | blue;
+}
+
 /**
  * For a description of this algorithm please refer to
  * http://en.wikipedia.org/wiki/Mandelbrot_set
@@ -27,29 +145,460 @@ kernel void mandelbrot(
     varfloat r = x0 + ix * rangeX / width;
     varfloat i = y0 + iy * rangeY / height;
 
-    varfloat x = 0;
-    varfloat y = 0;
+    int iteration = iterate(r, i, maxIterations, rangeX / width * 0.001f);
+    output[iy * width + ix] = color(iteration, maxIterations, colorMap, colorMapSize);
 
-    varfloat magnitudeSquared = 0;
+}
+
+#ifdef DOUBLE_SINGLE
+
+// a double-single value is the unevaluated sum x + y of two floats with |y| <= ulp(x)/2,
+// good for ~48 bits of mantissa. Must not be compiled with -cl-fast-relaxed-math, the
+// error terms below are zero in real arithmetic.
+typedef float2 dsfloat;
+
+inline dsfloat quickTwoSum(const float a, const float b) {
+    float s = a + b;
+    return (dsfloat)(s, b - (s - a));
+}
+
+inline dsfloat twoSum(const float a, const float b) {
+    float s = a + b;
+    float v = s - a;
+    return (dsfloat)(s, (a - (s - v)) + (b - v));
+}
+
+inline dsfloat twoProd(const float a, const float b) {
+    float p = a * b;
+#ifdef FP_FAST_FMAF
+    return (dsfloat)(p, fma(a, b, -p));
+#else
+    // Dekker's split into halves of 12 bits
+    float t = 4097.0f * a;
+    float ahi = t - (t - a);
+    float alo = a - ahi;
+    t = 4097.0f * b;
+    float bhi = t - (t - b);
+    float blo = b - bhi;
+    return (dsfloat)(p, ((ahi*bhi - p) + ahi*blo + alo*bhi) + alo*blo);
+#endif
+}
+
+inline dsfloat dsAdd(const dsfloat a, const dsfloat b) {
+    dsfloat s = twoSum(a.x, b.x);
+    return quickTwoSum(s.x, s.y + a.y + b.y);
+}
+
+inline dsfloat dsMul(const dsfloat a, const dsfloat b) {
+    dsfloat p = twoProd(a.x, b.x);
+    return quickTwoSum(p.x, p.y + a.x*b.y + a.y*b.x);
+}
+
+inline dsfloat dsDiv(const dsfloat a, const float b) {
+    float q1 = a.x / b;
+    dsfloat p = twoProd(q1, b);
+    float q2 = (a.x - p.x - p.y + a.y) / b;
+    return quickTwoSum(q1, q2);
+}
+
+/**
+ * mandelbrot in double-single arithmetic for devices without 64bit floating point support.
+ * x0, y0, rangeX and rangeY are the high parts of the view, the low parts follow the common
+ * arguments. Does not reject the cardioid and bulbs, a float test is wrong close to their edges
+ * at the zoom levels this kernel is made for.
+ */
+kernel void mandelbrotDS(
+        const int width,        const int height,
+        const float x0,         const float y0,
+        const float rangeX,     const float rangeY,
+        global uint *output,    global uint *colorMap,
+        const int colorMapSize, const int maxIterations,
+        const float x0Lo,       const float y0Lo,
+        const float rangeXLo,   const float rangeYLo) {
+
+    unsigned int ix = get_global_id(0);
+    unsigned int iy = get_global_id(1);
+
+    dsfloat stepX = dsDiv((dsfloat)(rangeX, rangeXLo), width);
+    dsfloat stepY = dsDiv((dsfloat)(rangeY, rangeYLo), height);
+
+    dsfloat r = dsAdd((dsfloat)(x0, x0Lo), dsMul(stepX, (dsfloat)(ix, 0)));
+    dsfloat i = dsAdd((dsfloat)(y0, y0Lo), dsMul(stepY, (dsfloat)(iy, 0)));
+
+    dsfloat x = 0;
+    dsfloat y = 0;
+
+    float magnitudeSquared = 0;
     int iteration = 0;
 
     while (magnitudeSquared < 4 && iteration < maxIterations) {
-        varfloat x2 = x*x;
-        varfloat y2 = y*y;
+        dsfloat x2 = dsMul(x, x);
+        dsfloat y2 = dsMul(y, y);
+        dsfloat xy = dsMul(x, y);
+        y = dsAdd(dsAdd(xy, xy), i);
+        x = dsAdd(dsAdd(x2, -y2), r);
+        magnitudeSquared = x2.x + y2.x;
+        iteration++;
+    }
+
+    output[iy * width + ix] = color(iteration, maxIterations, colorMap, colorMapSize);
+}
+
+#endif
+
+#ifdef VECTOR_WIDTH
+
+#define VECTOR_TYPE(type, n) type##n
+#define VECTOR(type, n) VECTOR_TYPE(type, n)
+
+// comparisons of double vectors result in long vectors
+#ifdef DOUBLE_FP
+    typedef VECTOR(double, VECTOR_WIDTH) varfloatn;
+    typedef VECTOR(long, VECTOR_WIDTH) maskn;
+#else
+    typedef VECTOR(float, VECTOR_WIDTH) varfloatn;
+    typedef VECTOR(int, VECTOR_WIDTH) maskn;
+#endif
+
+#if VECTOR_WIDTH == 2
+    #define LANES (0, 1)
+#elif VECTOR_WIDTH == 4
+    #define LANES (0, 1, 2, 3)
+#elif VECTOR_WIDTH == 8
+    #define LANES (0, 1, 2, 3, 4, 5, 6, 7)
+#else
+    #error VECTOR_WIDTH must be 2, 4 or 8
+#endif
+
+/**
+ * Computes VECTOR_WIDTH horizontally adjacent pixels per work-item, one per vector lane, starting
+ * at column left. Lanes stop counting once their orbit escaped, the work-item iterates until all
+ * lanes are done. Lanes at or right of column right are masked off from the start.
+ * EARLY_EXIT only rejects the cardioid and the period-2 bulb, a periodicity check does not pay
+ * off if all lanes have to agree on it.
+ */
+kernel void mandelbrotVector(
+        const int width,        const int height,
+        const varfloat x0,      const varfloat y0,
+        const varfloat rangeX,  const varfloat rangeY,
+        global uint *output,    global uint *colorMap,
+        const int colorMapSize, const int maxIterations,
+        const int left,         const int right) {
+
+    int ix = left + get_global_id(0) * VECTOR_WIDTH;
+    int iy = get_global_id(1);
+
+    varfloatn r = x0 + (ix + (varfloatn)LANES) * rangeX / width;
+    varfloat i = y0 + iy * rangeY / height;
+
+    varfloatn x = 0;
+    varfloatn y = 0;
+    maskn iteration = 0;
+
+    // all bits set in the lanes which are still iterating
+    maskn active = ix + (maskn)LANES < right;
+
+#ifdef EARLY_EXIT
+    varfloatn q = (r - 0.25f)*(r - 0.25f) + i*i;
+    maskn inside = q*(q + (r - 0.25f)) <= 0.25f*i*i || (r + 1)*(r + 1) + i*i <= 0.0625f;
+    iteration = select(iteration, (maskn)maxIterations, inside);
+    active &= ~inside;
+#endif
+
+    for (int n = 0; n < maxIterations && any(active); n++) {
+        varfloatn x2 = x*x;
+        varfloatn y2 = y*y;
         y = 2 * x * y + i;
         x = x2 - y2 + r;
-        magnitudeSquared = x2+y2;
-        iteration++;
+        iteration -= active;
+        active &= x2 + y2 < 4;
     }
 
-    if (iteration == maxIterations)  {
-        output[iy * width + ix] = 0;
+    int counts[VECTOR_WIDTH];
+    VECTOR(vstore, VECTOR_WIDTH)(VECTOR(convert_int, VECTOR_WIDTH)(iteration), 0, counts);
+
+    for (int k = 0; k < VECTOR_WIDTH && ix + k < right; k++) {
+        output[iy * width + ix + k] = color(counts[k], maxIterations, colorMap, colorMapSize);
+    }
+}
+
+#endif
+
+/**
+ * Like mandelbrot but keeps the iteration count, the fraction of the smooth iteration count
+ * (-1 if the point did not escape) and the last orbit point of every pixel. With resume set,
+ * pixels which neither escaped nor are known to be inside continue their orbit up to the
+ * current maxIterations, all others are final.
+ */
+kernel void iterateCached(
+        const int width,        const int height,
+        const varfloat x0,      const varfloat y0,
+        const varfloat rangeX,  const varfloat rangeY,
+        global uint *output,    global uint *colorMap,
+        const int colorMapSize, const int maxIterations,
+        global int *counts,     global float *fractions,
+        global varfloat *orbits,
+        const int resume,       const int smooth) {
+
+    unsigned int ix = get_global_id(0);
+    unsigned int iy = get_global_id(1);
+    int p = iy * width + ix;
+
+    varfloat r = x0 + ix * rangeX / width;
+    varfloat i = y0 + iy * rangeY / height;
+
+    varfloat x = 0;
+    varfloat y = 0;
+    int iteration = 0;
+
+    if (resume) {
+        iteration = counts[p];
+        if (iteration == INSIDE || fractions[p] >= 0) {
+            // resolved pixels keep their count, but the color depends on maxIterations
+            output[p] = shade(iteration, fractions[p], maxIterations, colorMap, colorMapSize, smooth);
+            return;
+        }
+        x = orbits[2*p];
+        y = orbits[2*p+1];
+    }
+#ifdef EARLY_EXIT
+    else if (inCardioidOrBulb(r, i)) {
+        iteration = INSIDE;
+    }
+#endif
+
+    if (iteration != INSIDE) {
+        iteration = iterateFrom(r, i, &x, &y, iteration, maxIterations, rangeX / width * 0.001f);
+    }
+
+    float fraction = -1;
+    if (iteration != INSIDE && iteration < maxIterations) {
+        // mu = n + 1 - log2(log|z|), x+y*i is one iteration past the escape
+        float logModulus = log((float)(x*x + y*y)) / 2;
+        fraction = clamp(1 - log2(logModulus), 0.0f, 0.999f);
+    }
+
+    counts[p] = iteration;
+    fractions[p] = fraction;
+    orbits[2*p] = x;
+    orbits[2*p+1] = y;
+    output[p] = shade(iteration, fraction, maxIterations, colorMap, colorMapSize, smooth);
+}
+
+/**
+ * Colors the cached iteration counts of iterateCached again.
+ */
+kernel void recolor(
+        const int width,
+        global uint *output,    global uint *colorMap,
+        const int colorMapSize, const int maxIterations,
+        global const int *counts, global const float *fractions,
+        const int smooth) {
+
+    int p = get_global_id(1) * width + get_global_id(0);
+    output[p] = shade(counts[p], fractions[p], maxIterations, colorMap, colorMapSize, smooth);
+}
+
+/**
+ * Progressive refinement. Iterates every step'th pixel and fills the step x step block it
+ * starts with its color. A refining pass skips the pixels of the last pass (2*step).
+ * The work-items of this kernel map to blocks, not pixels.
+ */
+kernel void progressive(
+        const int width,        const int height,
+        const varfloat x0,      const varfloat y0,
+        const varfloat rangeX,  const varfloat rangeY,
+        global uint *output,    global uint *colorMap,
+        const int colorMapSize, const int maxIterations,
+        const int step,         const int refine) {
+
+    int px = get_global_id(0) * step;
+    int py = get_global_id(1) * step;
+
+    if (px >= width || py >= height) {
+        return;
+    }
+    if (refine && px % (2*step) == 0 && py % (2*step) == 0) {
+        return;
+    }
+
+    int iteration = iterate(x0 + px * rangeX / width, y0 + py * rangeY / height, maxIterations, rangeX / width * 0.001f);
+    uint c = color(iteration, maxIterations, colorMap, colorMapSize);
+
+    int blockWidth = min(step, width - px);
+    int blockHeight = min(step, height - py);
+    for (int y = 0; y < blockHeight; y++) {
+        for (int x = 0; x < blockWidth; x++) {
+            output[(py + y) * width + px + x] = c;
+        }
+    }
+}
+
+/**
+ * Moves the image by dx, dy pixels, exposed pixels are left untouched.
+ */
+kernel void shift(global const uint *input, global uint *output,
+                  const int width, const int height, const int dx, const int dy) {
+
+    int x = get_global_id(0);
+    int y = get_global_id(1);
+
+    int sx = x - dx;
+    int sy = y - dy;
+    if (sx >= 0 && sx < width && sy >= 0 && sy < height) {
+        output[y * width + x] = input[sy * width + sx];
+    }
+}
+
+/*
+ * Mariani-Silver subdivision. Rectangles are stored as x, y, width, height and include their
+ * border. All pixels of a wave of rectangles are computed in parallel:
+ * 'borders' iterates the border pixels which are not known yet, 'subdivide' checks whether a
+ * border has a single iteration count and appends the four quarters of the other rectangles
+ * to the next wave (compaction), 'fill' writes the interior of the uniform rectangles and
+ * iterates the interior of rectangles which are too small to be split.
+ */
+
+// rectangle states
+#define SPLIT -2
+#define UNRESOLVED -1
+
+kernel void clearIterations(global int *iterations, const int size) {
+    int index = get_global_id(0);
+    if (index < size) {
+        iterations[index] = UNRESOLVED;
+    }
+}
+
+kernel void borders(
+        const int width,        const int height,
+        const varfloat x0,      const varfloat y0,
+        const varfloat rangeX,  const varfloat rangeY,
+        global uint *output,    global uint *colorMap,
+        const int colorMapSize, const int maxIterations,
+        global const int *rects, const int count,
+        const int maxPerimeter, global int *iterations) {
+
+    int gid = get_global_id(0);
+    int index = gid / maxPerimeter;
+    int k = gid % maxPerimeter;
+
+    if (index >= count) {
+        return;
+    }
+
+    int rx = rects[4*index];
+    int ry = rects[4*index+1];
+    int rw = rects[4*index+2];
+    int rh = rects[4*index+3];
+
+    // top row, bottom row, left column, right column
+    int px, py;
+    if (k < rw) {
+        px = rx + k;        py = ry;
+    }else if ((k -= rw) < rw) {
+        px = rx + k;        py = ry + rh - 1;
+    }else if ((k -= rw) < rh - 2) {
+        px = rx;            py = ry + 1 + k;
+    }else if ((k -= rh - 2) < rh - 2) {
+        px = rx + rw - 1;   py = ry + 1 + k;
     }else {
-        varfloat alpha = (varfloat)iteration / maxIterations;
-        int colorIndex = (int)(alpha * colorMapSize);
-        output[iy * width + ix] = colorMap[colorIndex];
-      // monochrom
-      //  output[iy * width + ix] = 255*iteration/maxIterations;
+        return;
+    }
+
+    int p = py * width + px;
+    if (iterations[p] == UNRESOLVED) {
+        int iteration = iterate(x0 + px * rangeX / width, y0 + py * rangeY / height, maxIterations, rangeX / width * 0.001f);
+        iterations[p] = iteration;
+        output[p] = color(iteration, maxIterations, colorMap, colorMapSize);
+    }
+}
+
+kernel void subdivide(
+        const int width,
+        global const int *rects, const int count,
+        global const int *iterations, global int *states,
+        global int *next, global int *nextCount,
+        const int minSize) {
+
+    int index = get_global_id(0);
+    if (index >= count) {
+        return;
+    }
+
+    int rx = rects[4*index];
+    int ry = rects[4*index+1];
+    int rw = rects[4*index+2];
+    int rh = rects[4*index+3];
+
+    int first = iterations[ry * width + rx];
+    bool same = true;
+    for (int k = 0; k < rw && same; k++) {
+        same = iterations[ry * width + rx + k] == first
+               && iterations[(ry + rh - 1) * width + rx + k] == first;
+    }
+    for (int k = 1; k < rh - 1 && same; k++) {
+        same = iterations[(ry + k) * width + rx] == first
+               && iterations[(ry + k) * width + rx + rw - 1] == first;
+    }
+
+    if (same) {
+        states[index] = first;
+    }else if (rw <= minSize || rh <= minSize) {
+        states[index] = UNRESOLVED;
+    }else {
+        states[index] = SPLIT;
+
+        // quarters share the center row and column
+        int hw = rw / 2;
+        int hh = rh / 2;
+        int slot = 4 * atomic_add(nextCount, 4);
+
+        next[slot   ] = rx;      next[slot+ 1] = ry;      next[slot+ 2] = hw + 1;  next[slot+ 3] = hh + 1;
+        next[slot+ 4] = rx + hw; next[slot+ 5] = ry;      next[slot+ 6] = rw - hw; next[slot+ 7] = hh + 1;
+        next[slot+ 8] = rx;      next[slot+ 9] = ry + hh; next[slot+10] = hw + 1;  next[slot+11] = rh - hh;
+        next[slot+12] = rx + hw; next[slot+13] = ry + hh; next[slot+14] = rw - hw; next[slot+15] = rh - hh;
+    }
+}
+
+kernel void fill(
+        const int width,        const int height,
+        const varfloat x0,      const varfloat y0,
+        const varfloat rangeX,  const varfloat rangeY,
+        global uint *output,    global uint *colorMap,
+        const int colorMapSize, const int maxIterations,
+        global const int *rects, const int count,
+        const int maxInterior, global int *iterations,
+        global const int *states) {
+
+    int gid = get_global_id(0);
+    int index = gid / maxInterior;
+    int k = gid % maxInterior;
+
+    if (index >= count) {
+        return;
+    }
+
+    int state = states[index];
+    if (state == SPLIT) {
+        return;
+    }
+
+    int iw = rects[4*index+2] - 2;
+    int ih = rects[4*index+3] - 2;
+    if (iw <= 0 || ih <= 0 || k >= iw * ih) {
+        return;
+    }
+
+    int px = rects[4*index]   + 1 + k % iw;
+    int py = rects[4*index+1] + 1 + k / iw;
+
+    int iteration = state;
+    if (state == UNRESOLVED) {
+        iteration = iterate(x0 + px * rangeX / width, y0 + py * rangeY / height, maxIterations, rangeX / width * 0.001f);
     }
 
-}
\ No newline at end of file
+    int p = py * width + px;
+    iterations[p] = iteration;
+    output[p] = color(iteration, maxIterations, colorMap, colorMapSize);
+}
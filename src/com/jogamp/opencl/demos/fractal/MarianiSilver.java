@@ -0,0 +1,183 @@
+package com.jogamp.opencl.demos.fractal;
+
+import com.jogamp.opencl.CLBuffer;
+import com.jogamp.opencl.CLCommandQueue;
+import com.jogamp.opencl.CLContext;
+import com.jogamp.opencl.CLEventList;
+import com.jogamp.opencl.CLKernel;
+import com.jogamp.opencl.CLProgram;
+import java.nio.IntBuffer;
+import java.util.List;
+
+import static com.jogamp.opencl.CLMemory.Mem.*;
+import static java.lang.Math.*;
+
+/**
+ * Mariani-Silver subdivision with the kernels of <code>Mandelbrot.cl</code>.
+ * <p>
+ * The tiles are processed in waves on the device: the borders of all rectangles of a wave are
+ * iterated, rectangles with a single iteration count on their border are filled without
+ * iterating the interior and all others are split into quarters which form the next wave.
+ * The split rectangles are compacted on the device, only their count is read back per wave.
+ * Rectangles of {@link #MIN_SIZE} or smaller are iterated completely.
+ * </p>
+ */
+class MarianiSilver {
+
+    // rectangles of this size are iterated instead of split
+    static final int MIN_SIZE = 8;
+
+    private final CLCommandQueue queue;
+
+    private final CLKernel clear;
+    private final CLKernel borders;
+    private final CLKernel subdivide;
+    private final CLKernel fill;
+
+    private final CLBuffer<IntBuffer> iterations;
+    private final CLBuffer<IntBuffer> states;
+    private final CLBuffer<IntBuffer> counter;
+    private CLBuffer<IntBuffer> current;
+    private CLBuffer<IntBuffer> next;
+
+    private final int width;
+    private final int height;
+    private final int tileSize;
+    private final int waves;
+
+    /**
+     * @param maxTiles the max number of tiles passed to {@link #render}.
+     */
+    MarianiSilver(CLContext context, CLProgram program, CLCommandQueue queue, int width, int height, int tileSize, int maxTiles) {
+
+        this.queue = queue;
+        this.width = width;
+        this.height = height;
+        this.tileSize = tileSize;
+
+        // every wave quarters the rectangles until they reach the min size
+        int waveCount = 1;
+        for (int size = tileSize; size > MIN_SIZE; size = size/2+1) {
+            waveCount++;
+        }
+        this.waves = waveCount;
+        int capacity = maxTiles << (2*(waves-1));
+
+        clear     = program.createCLKernel("clearIterations");
+        borders   = program.createCLKernel("borders");
+        subdivide = program.createCLKernel("subdivide");
+        fill      = program.createCLKernel("fill");
+
+        iterations = context.createIntBuffer(width*height, READ_WRITE);
+        states     = context.createIntBuffer(capacity, READ_WRITE);
+        counter    = context.createIntBuffer(1, READ_WRITE);
+        current    = context.createIntBuffer(4*capacity, READ_WRITE);
+        next       = context.createIntBuffer(4*capacity, READ_WRITE);
+
+        clear.setArg(0, iterations).setArg(1, width*height);
+        subdivide.setArg(0, width)
+                 .setArg(3, iterations).setArg(4, states)
+                 .setArg(6, counter).setArg(7, MIN_SIZE);
+    }
+
+    /**
+     * Sets the arguments which stay the same between frames.
+     */
+    void setConstants(boolean force32BitArgs, CLBuffer<?> output, CLBuffer<IntBuffer> colorMap, int maxIterations) {
+        for (CLKernel kernel : new CLKernel[] {borders, fill}) {
+            kernel.setForce32BitArgs(force32BitArgs)
+                  .setArg(6, output)
+                  .setArg(7, colorMap)
+                  .setArg(8, colorMap.getBuffer().capacity())
+                  .setArg(13, iterations);
+        }
+        fill.setArg(14, states);
+        setMaxIterations(maxIterations);
+    }
+
+    void setMaxIterations(int maxIterations) {
+        borders.setArg(9, maxIterations);
+        fill.setArg(9, maxIterations);
+    }
+
+    void setView(double minX, double minY, double rangeX, double rangeY) {
+        for (CLKernel kernel : new CLKernel[] {borders, fill}) {
+            kernel.putArg( width).putArg(height)
+                  .putArg(  minX).putArg(  minY)
+                  .putArg(rangeX).putArg(rangeY)
+                  .rewind();
+        }
+    }
+
+    /**
+     * Forgets all iteration counts, required once per frame.
+     */
+    void clear() {
+        queue.put1DRangeKernel(clear, 0, width*height, 0);
+    }
+
+    /**
+     * Renders the tiles, blocks until done. Every wave adds three probes to the list.
+     */
+    void render(List<TileScheduler.Tile> tiles, CLEventList probes) {
+
+        IntBuffer rects = current.getBuffer();
+        rects.clear();
+        for (TileScheduler.Tile tile : tiles) {
+            rects.put(tile.x).put(tile.y).put(tile.width).put(tile.height);
+        }
+        rects.rewind();
+        queue.putWriteBuffer(current, false);
+
+        int count = tiles.size();
+        int maxWidth = tileSize;
+        int maxHeight = tileSize;
+
+        while(count > 0) {
+
+            int perimeter = 2*maxWidth + 2*max(0, maxHeight-2);
+            int interior = max(1, (maxWidth-2)*(maxHeight-2));
+
+            borders.setArg(10, current).setArg(11, count).setArg(12, perimeter);
+            subdivide.setArg(1, current).setArg(2, count).setArg(5, next);
+            fill.setArg(10, current).setArg(11, count).setArg(12, interior);
+
+            counter.getBuffer().put(0, 0);
+            queue.putWriteBuffer(counter, false)
+                 .put1DRangeKernel(borders, 0, count*perimeter, 0, probes)
+                 .put1DRangeKernel(subdivide, 0, count, 0, probes)
+                 .put1DRangeKernel(fill, 0, count*interior, 0, probes)
+                 .putReadBuffer(counter, true);
+
+            count = counter.getBuffer().get(0);
+            maxWidth = maxWidth/2+1;
+            maxHeight = maxHeight/2+1;
+
+            CLBuffer<IntBuffer> swap = current;
+            current = next;
+            next = swap;
+        }
+    }
+
+    /**
+     * Capacity of the probe list passed to {@link #render}.
+     */
+    int getMaxEvents() {
+        return 3*waves;
+    }
+
+    void release() {
+        // the kernels are gone if the program was rebuilt
+        for (CLKernel kernel : new CLKernel[] {clear, borders, subdivide, fill}) {
+            if(!kernel.isReleased()) {
+                kernel.release();
+            }
+        }
+        iterations.release();
+        states.release();
+        counter.release();
+        current.release();
+        next.release();
+    }
+
+}
@@ -3,7 +3,6 @@ package com.jogamp.opencl.demos.fractal;
 import com.jogamp.opencl.CLBuffer;
 import com.jogamp.opencl.CLCommandQueue;
 import com.jogamp.opencl.CLDevice;
-import com.jogamp.opencl.CLEvent;
 import com.jogamp.opencl.CLEventList;
 import com.jogamp.opencl.CLException;
 import com.jogamp.opencl.gl.CLGLBuffer;
@@ -29,6 +28,12 @@ import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.io.IOException;
 import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.media.opengl.DebugGL2;
@@ -46,19 +51,29 @@ import static com.jogamp.common.nio.Buffers.*;
 import static javax.media.opengl.GL2.*;
 import static com.jogamp.opencl.CLMemory.Mem.*;
 import static com.jogamp.opencl.CLDevice.Type.*;
-import static com.jogamp.opencl.CLEvent.ProfilingCommand.*;
 import static com.jogamp.opencl.CLCommandQueue.Mode.*;
 import static java.lang.Math.*;
 
 /**
  * Computes the Mandelbrot set with OpenCL using multiple GPUs and renders the result with OpenGL.
- * A shared PBO is used as storage for the fractal image.<br/>
+ * Every device renders into its own shared PBO, the image is split into tiles which are handed
+ * out to the devices as they become idle (see {@link TileScheduler}).<br/>
  * http://en.wikipedia.org/wiki/Mandelbrot_set
  * <p>
  * controls:<br/>
  * keys 1-9 control parallelism level<br/>
- * space enables/disables slice seperator<br/>
- * 'd' toggles between 32/64bit floatingpoint precision<br/>
+ * space enables/disables tile seperators<br/>
+ * 'd' toggles between 32/64bit floatingpoint precision, devices without 64bit support use
+ * double-single (float pair) arithmetic for plain tiles instead<br/>
+ * 'e' toggles the early exit for points inside the set<br/>
+ * 'v' toggles the vector kernel which computes several pixels per work-item on devices
+ * with a preferred vector width (CPUs)<br/>
+ * 'm' toggles Mariani-Silver subdivision of the tiles (see {@link MarianiSilver})<br/>
+ * 'p' toggles progressive refinement, coarse passes first and panning reuses the last frame<br/>
+ * 'i' toggles the iteration cache (see {@link IterationCache}), palette changes and higher
+ * iteration limits reuse the last frame<br/>
+ * 'c' cycles the palette, 's' toggles smooth coloring of the cached iterations<br/>
+ * '+'/'-' double/halve the max iterations<br/>
  * mouse/mousewheel to drag and zoom<br/>
  * </p>
  * @author Michael Bien
@@ -68,18 +83,37 @@ public class MultiDeviceFractal implements GLEventListener {
     // max number of used GPUs
     private static final int MAX_PARRALLELISM_LEVEL = 8;
 
-    // max per pixel iterations to compute the fractal
+    // max per pixel iterations to compute the fractal, initial value
     private static final int MAX_ITERATIONS         = 500;
 
+    private static final int MIN_ITERATIONS         = 50;
+
+    // block size of the first progressive pass
+    private static final int COARSEST_STEP          = 8;
+
+    private static final Color[][] PALETTES = {
+        {Color.BLUE, Color.GREEN, Color.RED},
+        {Color.BLACK, Color.ORANGE, Color.WHITE},
+        {Color.MAGENTA, Color.CYAN, Color.YELLOW}
+    };
+
     private GLCanvas canvas;
 
     private CLGLContext clContext;
     private CLCommandQueue[] queues;
     private CLKernel[] kernels;
+    private CLKernel[] vectorKernels;
+    private CLKernel[] progressiveKernels;
+    private CLKernel[] shiftKernels;
     private CLProgram[] programs;
-    private CLEventList probes;
+    private TileScheduler scheduler;
+    private ExecutorService workers;
+    private MarianiSilver[] subdivision;
+    private IterationCache[] cache;
     private CLGLBuffer<?>[] pboBuffers;
     private CLBuffer<IntBuffer>[] colorMap;
+    private CLBuffer<IntBuffer>[] scratch;
+    private int[] vectorWidths;
 
     private int width  = 0;
     private int height = 0;
@@ -90,12 +124,32 @@ public class MultiDeviceFractal implements GLEventListener {
     private double maxY  = 1.3f;
 
     private int slices;
+    private int maxIterations = MAX_ITERATIONS;
+    private int palette;
 
     private boolean drawSeperator;
     private boolean doublePrecision;
+    private boolean earlyExit = true;
+    private boolean vectorize = true;
+    private boolean subdivide;
+    private boolean progressive;
+    private boolean cacheIterations;
+    private boolean smooth;
     private boolean buffersInitialized;
     private boolean rebuild;
 
+    // progressive refinement: step of the next pass (0 if the frame is complete),
+    // pending pan in pixels and whether the last frame can be shifted
+    private int step = COARSEST_STEP;
+    private int shiftX;
+    private int shiftY;
+    private boolean frameValid;
+
+    // iteration cache: whether it holds the current view and the pending update of the last frame
+    private boolean cacheValid;
+    private boolean recolor;
+    private boolean resume;
+
     private final TextRenderer textRenderer;
 
     public MultiDeviceFractal(int width, int height) {
@@ -164,13 +218,18 @@ public class MultiDeviceFractal implements GLEventListener {
             // create command queues for every GPU, setup colormap and init kernels
             queues = new CLCommandQueue[slices];
             kernels = new CLKernel[slices];
-            probes = new CLEventList(slices);
+            vectorKernels = new CLKernel[slices];
+            vectorWidths = new int[slices];
+            progressiveKernels = new CLKernel[slices];
+            shiftKernels = new CLKernel[slices];
+            scheduler = new TileScheduler(slices);
+            workers = Executors.newFixedThreadPool(slices);
             colorMap = new CLBuffer[slices];
 
             for (int i = 0; i < slices; i++) {
 
                 colorMap[i] = clContext.createIntBuffer(32*2, READ_ONLY);
-                initColorMap(colorMap[i].getBuffer(), 32, Color.BLUE, Color.GREEN, Color.RED);
+                initColorMap(colorMap[i].getBuffer(), 32, PALETTES[palette]);
 
                 // create command queue and upload color map buffer on each used device
                 queues[i] = devices[i].createCommandQueue(PROFILING_MODE).putWriteBuffer(colorMap[i], true); // blocking upload
@@ -218,7 +277,7 @@ public class MultiDeviceFractal implements GLEventListener {
 
     }
 
-    private void initColorMap(IntBuffer colorMap, int stepSize, Color... colors) {
+    static void initColorMap(IntBuffer colorMap, int stepSize, Color... colors) {
         
         for (int n = 0; n < colors.length - 1; n++) {
 
@@ -278,10 +337,10 @@ public class MultiDeviceFractal implements GLEventListener {
         int[] pbo = new int[slices];
         gl.glGenBuffers(slices, pbo, 0);
 
-        // setup one empty PBO per slice
+        // setup one empty PBO per device, tiles may land anywhere in the image
         for (int i = 0; i < slices; i++) {
 
-            int length = width*height * SIZEOF_INT / slices;
+            int length = width*height * SIZEOF_INT;
             gl.glBindBuffer(GL_PIXEL_UNPACK_BUFFER, pbo[i]);
             gl.glBufferData(GL_PIXEL_UNPACK_BUFFER, length, null, GL_STREAM_DRAW);
             gl.glBindBuffer(GL_PIXEL_UNPACK_BUFFER, 0);
@@ -322,31 +381,132 @@ public class MultiDeviceFractal implements GLEventListener {
                 if(!device.isDoubleFPAvailable() && device.isExtensionAvailable("cl_amd_fp64")) {
                     configure.withDefine("AMD_FP");
                 }
+            }else if(doublePrecision) {
+                // emulated, programs are per device in this case
+                configure.withDefine("DOUBLE_SINGLE");
+            }
+            if(earlyExit) {
+                configure.withDefine("EARLY_EXIT");
+            }
+            int lanes = getVectorWidth(i);
+            if(lanes > 1) {
+                configure.withDefine("VECTOR_WIDTH", lanes);
             }
             if(programs.length > 1) {
                 configure.forDevice(device);
             }
+            // relaxed math would optimize the error terms of double-single arithmetic away
+            if(!isDoubleSingle(device)) {
+                configure.withOption(CompilerOptions.FAST_RELAXED_MATH);
+            }
             System.out.println(configure);
-            configure.withOption(CompilerOptions.FAST_RELAXED_MATH).build();
+            configure.build();
          }
 
         rebuild = false;
 
         for (int i = 0; i < kernels.length; i++) {
             // init kernel with constants
-            kernels[i] = programs[min(i, programs.length)].createCLKernel("mandelbrot");
+            boolean doubleSingle = isDoubleSingle(queues[i].getDevice());
+            kernels[i] = programs[min(i, programs.length-1)].createCLKernel(doubleSingle ? "mandelbrotDS" : "mandelbrot");
+            vectorWidths[i] = getVectorWidth(min(i, programs.length-1));
+            vectorKernels[i] = vectorWidths[i] > 1 ? programs[min(i, programs.length-1)].createCLKernel("mandelbrotVector") : null;
+            progressiveKernels[i] = programs[min(i, programs.length-1)].createCLKernel("progressive");
+            shiftKernels[i] = programs[min(i, programs.length-1)].createCLKernel("shift");
         }
 
     }
 
+    // lanes of the vector kernel in the given program, 1 for the scalar kernel only.
+    // A program shared by all devices uses the smallest width.
+    private int getVectorWidth(int program) {
+        if(!vectorize) {
+            return 1;
+        }
+        if(programs.length > 1) {
+            CLDevice device = queues[program].getDevice();
+            return isDoubleSingle(device) ? 1 : vectorWidth(device, doublePrecision && isDoubleFPAvailable(device));
+        }
+        int lanes = Integer.MAX_VALUE;
+        for (CLCommandQueue queue : queues) {
+            CLDevice device = queue.getDevice();
+            lanes = min(lanes, vectorWidth(device, doublePrecision && isDoubleFPAvailable(device)));
+        }
+        return lanes;
+    }
+
     // init kernels with constants
+    @SuppressWarnings("unchecked")
     private void setKernelConstants() {
+
+        if(subdivision != null) {
+            for (int i = 0; i < subdivision.length; i++) {
+                subdivision[i].release();
+                cache[i].release();
+                scratch[i].release();
+            }
+        }
+        subdivision = new MarianiSilver[slices];
+        cache = new IterationCache[slices];
+        scratch = new CLBuffer[slices];
+        int maxTiles = TileScheduler.split(width, height).size();
+
         for (int i = 0; i < slices; i++) {
-            kernels[i].setForce32BitArgs(!doublePrecision || !isDoubleFPAvailable(queues[i].getDevice()))
+            boolean force32Bit = !doublePrecision || !isDoubleFPAvailable(queues[i].getDevice());
+            kernels[i].setForce32BitArgs(force32Bit)
+                      .setArg(6, pboBuffers[i])
+                      .setArg(7, colorMap[i])
+                      .setArg(8, colorMap[i].getBuffer().capacity())
+                      .setArg(9, maxIterations);
+
+            if(vectorKernels[i] != null) {
+                vectorKernels[i].setForce32BitArgs(force32Bit)
+                          .setArg(6, pboBuffers[i])
+                          .setArg(7, colorMap[i])
+                          .setArg(8, colorMap[i].getBuffer().capacity())
+                          .setArg(9, maxIterations);
+            }
+
+            progressiveKernels[i].setForce32BitArgs(force32Bit)
                       .setArg(6, pboBuffers[i])
                       .setArg(7, colorMap[i])
                       .setArg(8, colorMap[i].getBuffer().capacity())
-                      .setArg(9, MAX_ITERATIONS);
+                      .setArg(9, maxIterations);
+
+            // the last frame is copied to scratch and shifted back into the PBO
+            scratch[i] = clContext.createIntBuffer(width*height, READ_WRITE);
+            shiftKernels[i].setArg(0, scratch[i])
+                           .setArg(1, pboBuffers[i])
+                           .setArg(2, width).setArg(3, height);
+
+            subdivision[i] = new MarianiSilver(clContext, programs[min(i, programs.length-1)], queues[i],
+                                               width, height, TileScheduler.TILE_SIZE, maxTiles);
+            subdivision[i].setConstants(force32Bit, pboBuffers[i], colorMap[i], maxIterations);
+
+            cache[i] = new IterationCache(clContext, programs[min(i, programs.length-1)], queues[i], width, height, !force32Bit);
+            cache[i].setConstants(force32Bit, pboBuffers[i], colorMap[i], maxIterations);
+            cache[i].setSmooth(smooth);
+        }
+    }
+
+    private void setMaxIterations(int maxIterations) {
+        this.maxIterations = maxIterations;
+        for (int i = 0; i < slices; i++) {
+            kernels[i].setArg(9, maxIterations);
+            if(vectorKernels[i] != null) {
+                vectorKernels[i].setArg(9, maxIterations);
+            }
+            progressiveKernels[i].setArg(9, maxIterations);
+            subdivision[i].setMaxIterations(maxIterations);
+            cache[i].setMaxIterations(maxIterations);
+        }
+    }
+
+    private void setPalette(int palette) {
+        this.palette = palette;
+        for (int i = 0; i < slices; i++) {
+            initColorMap(colorMap[i].getBuffer(), 32, PALETTES[palette]);
+            queues[i].putWriteBuffer(colorMap[i], true);
         }
     }
 
@@ -360,46 +520,203 @@ public class MultiDeviceFractal implements GLEventListener {
         if(!buffersInitialized) {
             initPBO(gl);
             setKernelConstants();
+            invalidate();
         }
         if(rebuild) {
             buildProgram();
             setKernelConstants();
+            invalidate();
+        }
+
+        if(cacheIterations) {
+            if(cacheValid && (recolor || resume)) {
+                // every device updates the cache of its own tiles
+                scheduler.repeat();
+                compute(0, false, resume ? IterationCache.Pass.RESUME : IterationCache.Pass.RECOLOR);
+            }else{
+                scheduler.reset(width, height, slices);
+                compute(0, false, IterationCache.Pass.ITERATE);
+                cacheValid = true;
+            }
+            recolor = false;
+            resume = false;
+        }else if(!progressive) {
+            scheduler.reset(width, height, slices);
+            compute(0, false, null);
+        }else{
+            if(shiftX != 0 || shiftY != 0) {
+                if(frameValid && abs(shiftX) < width && abs(shiftY) < height) {
+                    // reuse the last frame, compute the exposed strips at full resolution
+                    scheduler.shift(shiftX, shiftY);
+                    compute(0, true, null);
+                    shiftX = 0;
+                    shiftY = 0;
+                }else{
+                    invalidate();
+                }
+            }
+            if(step > 0) {
+                if(step == COARSEST_STEP) {
+                    scheduler.reset(width, height, slices);
+                }else{
+                    // refine in place, every device refines its own tiles
+                    scheduler.repeat();
+                }
+                compute(step, false, null);
+
+                step /= 2;
+                if(step > 0) {
+                    // next pass after this frame is on screen
+                    SwingUtilities.invokeLater(new Runnable() {
+                        @Override public void run() {
+                            canvas.display();
+                        }
+                    });
+                }else{
+                    frameValid = true;
+                }
+            }
         }
-        compute();
 
         render(gl.getGL2());
     }
 
-    // OpenCL
-    private void compute() {
+    // restarts progressive refinement with the coarsest pass and drops the iteration cache
+    private void invalidate() {
+        step = COARSEST_STEP;
+        shiftX = 0;
+        shiftY = 0;
+        frameValid = false;
+        cacheValid = false;
+        recolor = false;
+        resume = false;
+    }
 
-        int sliceWidth = (int)(width / (float)slices);
-        double rangeX  = (maxX - minX) / slices;
-        double rangeY  = (maxY - minY);
+    // OpenCL, passStep is the block size of a progressive pass or 0 for full resolution,
+    // cachePass is the pass of the iteration cache if enabled
+    private void compute(final int passStep, final boolean shift, final IterationCache.Pass cachePass) {
 
-        // release all old events, you can't reuse events in OpenCL
-        probes.release();
+        double rangeX  = (maxX - minX);
+        double rangeY  = (maxY - minY);
 
-        // start computation
+        // start computation, every device feeds itself from the scheduler
+        List<Future<?>> running = new ArrayList<Future<?>>(slices);
         for (int i = 0; i < slices; i++) {
 
-            kernels[i].putArg(     sliceWidth).putArg(height)
-                      .putArg(minX + rangeX*i).putArg(  minY)
-                      .putArg(       rangeX  ).putArg(rangeY)
+            kernels[i].putArg( width).putArg(height)
+                      .putArg(  minX).putArg(  minY)
+                      .putArg(rangeX).putArg(rangeY)
                       .rewind();
+            if(isDoubleSingle(queues[i].getDevice())) {
+                kernels[i].setArg(10, lowPart(minX)).setArg(11, lowPart(minY))
+                          .setArg(12, lowPart(rangeX)).setArg(13, lowPart(rangeY));
+            }
+            if(vectorKernels[i] != null) {
+                vectorKernels[i].putArg( width).putArg(height)
+                          .putArg(  minX).putArg(  minY)
+                          .putArg(rangeX).putArg(rangeY)
+                          .rewind();
+            }
+            progressiveKernels[i].putArg( width).putArg(height)
+                      .putArg(  minX).putArg(  minY)
+                      .putArg(rangeX).putArg(rangeY)
+                      .rewind();
+            subdivision[i].setView(minX, minY, rangeX, rangeY);
+            cache[i].setView(minX, minY, rangeX, rangeY);
 
-            // aquire GL objects, and enqueue a kernel with a probe from the list
-            queues[i].putAcquireGLObject(pboBuffers[i])
-                     .put2DRangeKernel(kernels[i], 0, 0, sliceWidth, height, 0, 0, probes)
-                     .putReleaseGLObject(pboBuffers[i]);
-
+            final int device = i;
+            running.add(workers.submit(new Runnable() {
+                @Override public void run() {
+                    computeTiles(device, passStep, shift, cachePass);
+                }
+            }));
         }
 
         // block until done (important: finish before doing further gl work)
-        for (int i = 0; i < slices; i++) {
-            queues[i].finish();
+        for (Future<?> future : running) {
+            try {
+                future.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(ex);
+            } catch (ExecutionException ex) {
+                throw new RuntimeException(ex.getCause());
+            }
+        }
+
+    }
+
+    private void computeTiles(int device, int passStep, boolean shift, IterationCache.Pass cachePass) {
+
+        CLCommandQueue queue = queues[device];
+        queue.putAcquireGLObject(pboBuffers[device]);
+
+        if(shift) {
+            shiftKernels[device].setArg(4, shiftX).setArg(5, shiftY);
+            queue.putCopyBuffer(pboBuffers[device], scratch[device])
+                 .put2DRangeKernel(shiftKernels[device], 0, 0, width, height, 0, 0);
+        }
+
+        if(passStep > 0) {
+            progressiveKernels[device].setArg(10, passStep).setArg(11, passStep < COARSEST_STEP ? 1 : 0);
+        }
+
+        if(subdivide && passStep == 0 && cachePass == null) {
+            // waves of border, subdivide and fill kernels per batch
+            subdivision[device].clear();
+            List<TileScheduler.Tile> batch;
+            while((batch = scheduler.take(device)) != null) {
+                CLEventList probes = new CLEventList(subdivision[device].getMaxEvents());
+                subdivision[device].render(batch, probes);
+                scheduler.update(device, probes, batch.size());
+                probes.release();
+            }
+        }else{
+            // keep one batch in flight while waiting for the previous one
+            CLEventList probes = enqueueTiles(device, scheduler.take(device), passStep, cachePass);
+            while(probes != null) {
+                CLEventList nextProbes = enqueueTiles(device, scheduler.take(device), passStep, cachePass);
+
+                probes.waitForEvents();
+                scheduler.update(device, probes, probes.size());
+                // you can't reuse events in OpenCL
+                probes.release();
+
+                probes = nextProbes;
+            }
+        }
+
+        queue.putReleaseGLObject(pboBuffers[device]).finish();
+    }
+
+    // enqueues one kernel per tile with a probe from the list,
+    // progressive passes launch one work-item per block of passStep pixels
+    private CLEventList enqueueTiles(int device, List<TileScheduler.Tile> batch, int passStep, IterationCache.Pass cachePass) {
+
+        if(batch == null) {
+            return null;
         }
 
+        CLEventList probes = new CLEventList(batch.size());
+        for (TileScheduler.Tile tile : batch) {
+            if(cachePass != null) {
+                cache[device].enqueue(tile, cachePass, probes);
+            }else if(passStep > 0) {
+                queues[device].put2DRangeKernel(progressiveKernels[device],
+                        tile.x / passStep, tile.y / passStep,
+                        (tile.width + passStep - 1) / passStep, (tile.height + passStep - 1) / passStep, 0, 0, probes);
+            }else if(vectorKernels[device] != null) {
+                // one work-item per group of lanes, the kernel masks the lanes past the tile
+                int lanes = vectorWidths[device];
+                vectorKernels[device].setArg(10, tile.x).setArg(11, tile.x + tile.width);
+                queues[device].put2DRangeKernel(vectorKernels[device],
+                        0, tile.y, (tile.width + lanes - 1) / lanes, tile.height, 0, 0, probes);
+            }else{
+                queues[device].put2DRangeKernel(kernels[device], tile.x, tile.y, tile.width, tile.height, 0, 0, probes);
+            }
+        }
+        queues[device].flush();
+        return probes;
     }
 
     // OpenGL
@@ -407,35 +724,44 @@ public class MultiDeviceFractal implements GLEventListener {
 
         gl.glClear(GL_COLOR_BUFFER_BIT);
 
-        //draw slices
-        int sliceWidth = width / slices;
+        //draw the tiles of every device from its PBO
+        int seperator = drawSeperator?1:0;
+        gl.glPixelStorei(GL_UNPACK_ROW_LENGTH, width);
 
         for (int i = 0; i < slices; i++) {
 
-            int seperatorOffset = drawSeperator?i:0;
-
             gl.glBindBuffer(GL_PIXEL_UNPACK_BUFFER, pboBuffers[i].GLID);
-            gl.glRasterPos2i(sliceWidth*i + seperatorOffset, 0);
 
-            gl.glDrawPixels(sliceWidth, height, GL_BGRA, GL_UNSIGNED_BYTE, 0);
+            for (TileScheduler.Tile tile : scheduler.getTiles(i)) {
+                gl.glPixelStorei(GL_UNPACK_SKIP_PIXELS, tile.x);
+                gl.glPixelStorei(GL_UNPACK_SKIP_ROWS, tile.y);
+                gl.glRasterPos2i(tile.x, tile.y);
+
+                gl.glDrawPixels(tile.width-seperator, tile.height-seperator, GL_BGRA, GL_UNSIGNED_BYTE, 0);
+            }
 
         }
+        gl.glPixelStorei(GL_UNPACK_SKIP_PIXELS, 0);
+        gl.glPixelStorei(GL_UNPACK_SKIP_ROWS, 0);
+        gl.glPixelStorei(GL_UNPACK_ROW_LENGTH, 0);
         gl.glBindBuffer(GL_PIXEL_UNPACK_BUFFER, 0);
 
         //draw info text
         textRenderer.beginRendering(width, height, false);
 
-            textRenderer.draw("device/time/precision", 10, height-15);
+            textRenderer.draw("device/time/tiles/precision, "+maxIterations+" iterations"
+                            +(cacheIterations?" (cached)":subdivide?" (subdivision)":progressive?" (progressive)":"")
+                            +(earlyExit?"":" (no early exit)"), 10, height-15);
 
             for (int i = 0; i < slices; i++) {
                 CLDevice device = queues[i].getDevice();
                 boolean doubleFP = doublePrecision && isDoubleFPAvailable(device);
-                CLEvent event = probes.getEvent(i);
-                long start = event.getProfilingInfo(START);
-                long end = event.getProfilingInfo(END);
+                String precision = doubleFP ? "64bit" : isDoubleSingle(device) ? "2x32bit" : "32bit";
                 textRenderer.draw(device.getType().toString()+i +" "
-                               + (int)((end-start)/1000000.0f)+"ms @"
-                               + (doubleFP?"64bit":"32bit"), 10, height-(20+16*(slices-i)));
+                               + (int)(scheduler.getBusyTime(i)/1000000.0f)+"ms "
+                               + scheduler.getTiles(i).size()+" tiles @"
+                               + precision
+                               + (vectorWidths[i] > 1?" x"+vectorWidths[i]:""), 10, height-(20+16*(slices-i)));
             }
 
         textRenderer.endRendering();
@@ -452,6 +778,7 @@ public class MultiDeviceFractal implements GLEventListener {
 
         initPBO(drawable.getGL());
         setKernelConstants();
+        invalidate();
 
         initView(drawable.getGL().getGL2(), width, height);
         
@@ -475,6 +802,12 @@ public class MultiDeviceFractal implements GLEventListener {
                 maxX += offsetX;
                 maxY -= offsetY;
 
+                // the view moved by whole pixels, the last frame can be reused
+                if(progressive) {
+                    shiftX += e.getX() - lastpos.x;
+                    shiftY += lastpos.y - e.getY();
+                }
+
                 lastpos = e.getPoint();
 
                 canvas.display();
@@ -503,6 +836,7 @@ public class MultiDeviceFractal implements GLEventListener {
                 maxX +=-deltaX+offsetX;
                 maxY +=-deltaY-offsetY;
 
+                invalidate();
                 canvas.display();
             }
         };
@@ -520,6 +854,37 @@ public class MultiDeviceFractal implements GLEventListener {
                 }else if(e.getKeyCode() == KeyEvent.VK_D) {
                     doublePrecision = !doublePrecision;
                     rebuild = true;
+                }else if(e.getKeyCode() == KeyEvent.VK_E) {
+                    earlyExit = !earlyExit;
+                    rebuild = true;
+                }else if(e.getKeyCode() == KeyEvent.VK_V) {
+                    vectorize = !vectorize;
+                    rebuild = true;
+                }else if(e.getKeyCode() == KeyEvent.VK_M) {
+                    subdivide = !subdivide;
+                }else if(e.getKeyCode() == KeyEvent.VK_P) {
+                    progressive = !progressive;
+                }else if(e.getKeyCode() == KeyEvent.VK_I) {
+                    cacheIterations = !cacheIterations;
+                }else if(e.getKeyCode() == KeyEvent.VK_C) {
+                    setPalette((palette+1) % PALETTES.length);
+                    recolor = true;
+                }else if(e.getKeyCode() == KeyEvent.VK_S) {
+                    smooth = !smooth;
+                    for (IterationCache c : cache) {
+                        c.setSmooth(smooth);
+                    }
+                    recolor = true;
+                }else if(e.getKeyChar() == '+') {
+                    setMaxIterations(maxIterations*2);
+                    resume = true;
+                }else if(e.getKeyChar() == '-') {
+                    setMaxIterations(max(MIN_ITERATIONS, maxIterations/2));
+                }
+                // the cache can update the last frame, everything else starts over
+                boolean update = cacheIterations && (recolor || resume);
+                if(e.getKeyCode() != KeyEvent.VK_SPACE && !update) {
+                    invalidate();
                 }
                 canvas.display();
             }
@@ -532,11 +897,35 @@ public class MultiDeviceFractal implements GLEventListener {
     }
 
 
-    private boolean isDoubleFPAvailable(CLDevice device) {
+    static boolean isDoubleFPAvailable(CLDevice device) {
         return device.isDoubleFPAvailable() || device.isExtensionAvailable("cl_amd_fp64");
     }
 
+    // 64bit precision requested but only emulated
+    private boolean isDoubleSingle(CLDevice device) {
+        return doublePrecision && !isDoubleFPAvailable(device);
+    }
+
+    /**
+     * The rounding error of the value as float, the low part of a double-single number.
+     */
+    static float lowPart(double value) {
+        return (float)(value - (float)value);
+    }
+
+    /**
+     * Lanes of <code>mandelbrotVector</code> for the device, its preferred vector width limited
+     * to 2, 4 or 8. 1 if the device prefers scalar code.
+     */
+    static int vectorWidth(CLDevice device, boolean doubleFP) {
+        int preferred = doubleFP ? device.getPreferredDoubleVectorWidth() : device.getPreferredFloatVectorWidth();
+        return preferred < 2 ? 1 : min(Integer.highestOneBit(preferred), 8);
+    }
+
     private void release(Window win) {
+        if(workers != null) {
+            workers.shutdown();
+        }
         if(clContext != null) {
             // releases all resources
             clContext.release();
@@ -0,0 +1,238 @@
+package com.jogamp.opencl.demos.fractal;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.lang.Math.*;
+
+/**
+ * High precision orbit Z(n+1) = Z(n)^2 + C of the reference point of a perturbation render,
+ * stored as interleaved doubles. The orbit is iterated with BigDecimal, from
+ * {@link #PARALLEL_DIGITS} digits on the three products of every iteration are computed in parallel.
+ * <p>
+ * The series approximation dz(n) = A(n)*dc + B(n)*dc^2 + C(n)*dc^3 of the pixel deltas is derived
+ * from the same orbit, it lets the device skip the iterations in which all pixels of the image
+ * still move together.
+ * </p>
+ */
+class ReferenceOrbit {
+
+    // below this precision a thread handoff costs more than a multiplication
+    static final int PARALLEL_DIGITS = 200;
+
+    // max ratio of the third to the second term of the series
+    static final double SERIES_TOLERANCE = 0.001;
+
+    // max relative error of the series against the iterated probes, about a thousandth
+    // of a pixel for views a thousand pixels wide
+    static final double PROBE_TOLERANCE = 1e-6;
+    private static final int PROBES = 8;
+
+    private final double[] orbit;
+    private final int length;
+    private final int digits;
+
+    /**
+     * Iterates the orbit of x+yi until it escapes or maxIterations are reached.
+     */
+    ReferenceOrbit(BigDecimal x, BigDecimal y, int maxIterations, int digits) {
+
+        this.digits = digits;
+        final MathContext mc = new MathContext(digits);
+        BigDecimal four = BigDecimal.valueOf(4);
+
+        double[] values = new double[2*(maxIterations+1)];
+        int n = 0;
+
+        ExecutorService executor = digits >= PARALLEL_DIGITS ? Executors.newFixedThreadPool(2) : null;
+        try{
+            BigDecimal zx = BigDecimal.ZERO;
+            BigDecimal zy = BigDecimal.ZERO;
+
+            while(true) {
+                values[2*n]   = zx.doubleValue();
+                values[2*n+1] = zy.doubleValue();
+                if(n == maxIterations) {
+                    break;
+                }
+
+                BigDecimal xx, yy, xy;
+                if(executor != null) {
+                    Future<BigDecimal> squareX = executor.submit(new Square(zx, mc));
+                    Future<BigDecimal> squareY = executor.submit(new Square(zy, mc));
+                    xy = zx.multiply(zy, mc);
+                    xx = get(squareX);
+                    yy = get(squareY);
+                }else{
+                    xx = zx.multiply(zx, mc);
+                    yy = zy.multiply(zy, mc);
+                    xy = zx.multiply(zy, mc);
+                }
+                n++;
+
+                if(xx.add(yy).compareTo(four) > 0) {
+                    // the reference escaped, the device rebases on the start of the orbit
+                    break;
+                }
+
+                zx = xx.subtract(yy).add(x, mc);
+                zy = xy.add(xy).add(y, mc);
+            }
+        }finally{
+            if(executor != null) {
+                executor.shutdown();
+            }
+        }
+
+        this.length = n+1;
+        this.orbit = new double[2*length];
+        System.arraycopy(values, 0, orbit, 0, orbit.length);
+    }
+
+    /**
+     * The number of significant digits required for the coordinates of a view of
+     * the given range and resolution.
+     */
+    static int digitsFor(double range, int pixels) {
+        return max(20, (int)ceil(-log10(range / pixels)) + 10);
+    }
+
+    /**
+     * Returns the series approximation for a view of the given half width and height around the
+     * reference. The series is only extended while it agrees with the perturbation iteration of
+     * probes at the corners and edge centers of the view.
+     */
+    Series approximate(double halfWidth, double halfHeight, int maxIterations) {
+
+        double ax = 0, ay = 0, bx = 0, by = 0, cx = 0, cy = 0;
+        Series series = new Series(0, 0, 0, 0, 0, 0, 0);
+
+        double radius = hypot(halfWidth, halfHeight);
+
+        double[] dcx = {-halfWidth, 0, halfWidth, -halfWidth, halfWidth, -halfWidth, 0, halfWidth};
+        double[] dcy = {-halfHeight, -halfHeight, -halfHeight, 0, 0, halfHeight, halfHeight, halfHeight};
+        double[] dzx = new double[PROBES];
+        double[] dzy = new double[PROBES];
+
+        for (int n = 0; n < min(length-2, maxIterations-1); n++) {
+
+            double zx = orbit[2*n];
+            double zy = orbit[2*n+1];
+
+            // A' = 2ZA + 1, B' = 2ZB + A^2, C' = 2ZC + 2AB
+            double nax = 2*(zx*ax - zy*ay) + 1;
+            double nay = 2*(zx*ay + zy*ax);
+            double nbx = 2*(zx*bx - zy*by) + ax*ax - ay*ay;
+            double nby = 2*(zx*by + zy*bx) + 2*ax*ay;
+            double ncx = 2*(zx*cx - zy*cy) + 2*(ax*bx - ay*by);
+            double ncy = 2*(zx*cy + zy*cx) + 2*(ax*by + ay*bx);
+
+            // |C|r^3 > tolerance * |B|r^2 divided by r^2, r^3 underflows for deep zooms
+            double third  = hypot(ncx, ncy) * radius;
+            double second = hypot(nbx, nby);
+            if(Double.isNaN(third) || Double.isInfinite(third) || third > SERIES_TOLERANCE * second) {
+                break;
+            }
+
+            boolean valid = true;
+            for (int i = 0; i < PROBES && valid; i++) {
+
+                // dz' = 2Z*dz + dz^2 + dc
+                double x = dzx[i];
+                double y = dzy[i];
+                dzx[i] = 2*(zx*x - zy*y) + x*x - y*y + dcx[i];
+                dzy[i] = 2*(zx*y + zy*x) + 2*x*y    + dcy[i];
+
+                // A'dc + B'dc^2 + C'dc^3
+                double dc2x = dcx[i]*dcx[i] - dcy[i]*dcy[i];
+                double dc2y = 2*dcx[i]*dcy[i];
+                double dc3x = dc2x*dcx[i] - dc2y*dcy[i];
+                double dc3y = dc2x*dcy[i] + dc2y*dcx[i];
+                double sx = nax*dcx[i] - nay*dcy[i] + nbx*dc2x - nby*dc2y + ncx*dc3x - ncy*dc3y;
+                double sy = nax*dcy[i] + nay*dcx[i] + nbx*dc2y + nby*dc2x + ncx*dc3y + ncy*dc3x;
+
+                double error = hypot(sx - dzx[i], sy - dzy[i]);
+                valid = error <= PROBE_TOLERANCE * hypot(dzx[i], dzy[i]);
+            }
+            if(!valid) {
+                break;
+            }
+
+            ax = nax; ay = nay; bx = nbx; by = nby; cx = ncx; cy = ncy;
+            series = new Series(n+1, ax, ay, bx, by, cx, cy);
+        }
+        return series;
+    }
+
+    /**
+     * The orbit as interleaved x, y values.
+     */
+    double[] getOrbit() {
+        return orbit;
+    }
+
+    /**
+     * Number of orbit points including Z(0).
+     */
+    int getLength() {
+        return length;
+    }
+
+    int getDigits() {
+        return digits;
+    }
+
+    private static BigDecimal get(Future<BigDecimal> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        } catch (ExecutionException ex) {
+            throw new RuntimeException(ex.getCause());
+        }
+    }
+
+    private static class Square implements Callable<BigDecimal> {
+
+        private final BigDecimal value;
+        private final MathContext mc;
+
+        Square(BigDecimal value, MathContext mc) {
+            this.value = value;
+            this.mc = mc;
+        }
+
+        @Override
+        public BigDecimal call() {
+            return value.multiply(value, mc);
+        }
+    }
+
+    /**
+     * Coefficients of the series approximation valid for the first skip iterations.
+     */
+    static class Series {
+
+        final int skip;
+        final double ax, ay;
+        final double bx, by;
+        final double cx, cy;
+
+        Series(int skip, double ax, double ay, double bx, double by, double cx, double cy) {
+            this.skip = skip;
+            this.ax = ax;
+            this.ay = ay;
+            this.bx = bx;
+            this.by = by;
+            this.cx = cx;
+            this.cy = cy;
+        }
+    }
+
+}
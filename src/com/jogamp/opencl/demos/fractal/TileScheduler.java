@@ -0,0 +1,274 @@
+package com.jogamp.opencl.demos.fractal;
+
+import com.jogamp.opencl.CLEvent;
+import com.jogamp.opencl.CLEventList;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.jogamp.opencl.CLEvent.ProfilingCommand.*;
+import static java.lang.Math.*;
+
+/**
+ * Hands out the tiles of a frame to the devices as they become idle.
+ * <p>
+ * Every device takes a batch of tiles whenever it finished its last one, fast devices and
+ * devices working outside of the set therefore simply take more tiles. The batch size is derived
+ * from the kernel times of the previous batches (the probes) so that one batch takes about
+ * {@link #TARGET_TIME}, and is limited towards the end of the frame so that all devices finish
+ * at about the same time.
+ * </p>
+ * Passes which build on the last one ({@link #repeat()}) keep the assignment of the tiles to
+ * the devices since every device renders into its own buffer, so does a {@link #shift}.
+ */
+class TileScheduler {
+
+    // edge length of a tile in pixels
+    static final int TILE_SIZE = 32;
+
+    // kernel time per batch in ns
+    static final long TARGET_TIME = 2000000;
+
+    private int devices;
+
+    // moving average of the kernel time per tile in ns, -1 if not measured yet
+    private final double[] timePerTile;
+
+    // tiles of the current image per device
+    private final List<List<Tile>> tiles;
+    private final long[] busyTime;
+
+    // shared work of the frame, or per device work if the last assignment is repeated
+    private List<Tile> work;
+    private int next;
+    private List<List<Tile>> repeated;
+    private int[] repeatedNext;
+
+    private int width;
+    private int height;
+
+    TileScheduler(int maxDevices) {
+        this.timePerTile = new double[maxDevices];
+        this.busyTime = new long[maxDevices];
+        this.tiles = new ArrayList<List<Tile>>(maxDevices);
+        for (int i = 0; i < maxDevices; i++) {
+            timePerTile[i] = -1;
+            tiles.add(new ArrayList<Tile>());
+        }
+        this.work = new ArrayList<Tile>();
+    }
+
+    /**
+     * Starts a new frame on the first devices. The measured tile times are kept across frames.
+     */
+    synchronized void reset(int width, int height, int devices) {
+        if(this.width != width || this.height != height) {
+            for (int i = 0; i < timePerTile.length; i++) {
+                timePerTile[i] = -1;
+            }
+        }
+        this.devices = devices;
+        this.width = width;
+        this.height = height;
+        for (int i = 0; i < tiles.size(); i++) {
+            tiles.get(i).clear();
+        }
+        start(split(0, 0, width, height));
+    }
+
+    /**
+     * Starts a new pass over the same image in which every device gets the tiles it
+     * computed in the last pass again. Used if a pass builds on the results of the last one.
+     */
+    synchronized void repeat() {
+        start(new ArrayList<Tile>());
+        repeated = new ArrayList<List<Tile>>(devices);
+        repeatedNext = new int[devices];
+        for (int i = 0; i < devices; i++) {
+            repeated.add(new ArrayList<Tile>(tiles.get(i)));
+        }
+    }
+
+    /**
+     * Moves the image by dx, dy pixels. A device keeps the cells of the tile grid which are
+     * completely covered by the moved parts of its tiles, all other cells (the exposed strips and
+     * cells shared by several devices) are handed out as new work. This keeps every device's
+     * tiles on the grid, the tile count does not grow with the number of shifts.
+     */
+    synchronized void shift(int dx, int dy) {
+
+        int columns = (width + TILE_SIZE - 1) / TILE_SIZE;
+        int rows = (height + TILE_SIZE - 1) / TILE_SIZE;
+
+        // pixels of every cell covered by the moved tiles of every device
+        int[][] covered = new int[columns * rows][devices];
+
+        Tile image = new Tile(0, 0, width, height);
+        for (int i = 0; i < devices; i++) {
+            for (Tile tile : tiles.get(i)) {
+                Tile moved = new Tile(tile.x + dx, tile.y + dy, tile.width, tile.height).intersect(image);
+                if(moved == null) {
+                    continue;
+                }
+                for (int row = moved.y / TILE_SIZE; row <= (moved.y + moved.height - 1) / TILE_SIZE; row++) {
+                    for (int column = moved.x / TILE_SIZE; column <= (moved.x + moved.width - 1) / TILE_SIZE; column++) {
+                        Tile cell = cell(column, row);
+                        Tile part = moved.intersect(cell);
+                        if(part != null) {
+                            covered[row * columns + column][i] += part.width * part.height;
+                        }
+                    }
+                }
+            }
+            tiles.get(i).clear();
+        }
+
+        List<Tile> exposed = new ArrayList<Tile>();
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                Tile cell = cell(column, row);
+                int owner = -1;
+                for (int i = 0; i < devices; i++) {
+                    if(covered[row * columns + column][i] == cell.width * cell.height) {
+                        owner = i;
+                    }
+                }
+                if(owner == -1) {
+                    exposed.add(cell);
+                }else{
+                    tiles.get(owner).add(cell);
+                }
+            }
+        }
+        start(exposed);
+    }
+
+    // the cell of the tile grid, clipped to the image
+    private Tile cell(int column, int row) {
+        int x = column * TILE_SIZE;
+        int y = row * TILE_SIZE;
+        return new Tile(x, y, min(TILE_SIZE, width - x), min(TILE_SIZE, height - y));
+    }
+
+    private void start(List<Tile> work) {
+        this.work = work;
+        this.next = 0;
+        this.repeated = null;
+        for (int i = 0; i < busyTime.length; i++) {
+            busyTime[i] = 0;
+        }
+    }
+
+    /**
+     * Returns the next batch of tiles for the device or null if the frame is done.
+     */
+    synchronized List<Tile> take(int device) {
+
+        List<Tile> source = repeated == null ? work : repeated.get(device);
+        int first = repeated == null ? next : repeatedNext[device];
+
+        int remaining = source.size() - first;
+        if(remaining == 0) {
+            return null;
+        }
+
+        // one tile until the device was measured
+        int count = 1;
+        if(timePerTile[device] > 0) {
+            count = (int)max(1, TARGET_TIME / timePerTile[device]);
+        }
+        // guided self scheduling: never take more than a fair share of the rest
+        count = min(count, max(1, remaining / (2 * (repeated == null ? devices : 1))));
+
+        List<Tile> batch = new ArrayList<Tile>(source.subList(first, first + count));
+        if(repeated == null) {
+            next += count;
+            tiles.get(device).addAll(batch);
+        }else{
+            repeatedNext[device] += count;
+        }
+        return batch;
+    }
+
+    /**
+     * Updates the tile time of the device with the profiling events of a finished batch.
+     */
+    synchronized void update(int device, CLEventList probes, int tileCount) {
+
+        long time = 0;
+        for (CLEvent event : probes) {
+            time += event.getProfilingInfo(END) - event.getProfilingInfo(START);
+        }
+        busyTime[device] += time;
+
+        double measured = time / (double)tileCount;
+        if(timePerTile[device] < 0) {
+            timePerTile[device] = measured;
+        }else{
+            timePerTile[device] = 0.5 * timePerTile[device] + 0.5 * measured;
+        }
+    }
+
+    /**
+     * Splits the whole image into tiles.
+     */
+    static List<Tile> split(int width, int height) {
+        return split(0, 0, width, height);
+    }
+
+    /**
+     * Splits a region into tiles which are aligned to the tile grid of the region.
+     */
+    static List<Tile> split(int x0, int y0, int width, int height) {
+        List<Tile> tiles = new ArrayList<Tile>();
+        for (int y = y0; y < y0 + height; y += TILE_SIZE) {
+            for (int x = x0; x < x0 + width; x += TILE_SIZE) {
+                tiles.add(new Tile(x, y, min(TILE_SIZE, x0 + width - x), min(TILE_SIZE, y0 + height - y)));
+            }
+        }
+        return tiles;
+    }
+
+    /**
+     * The tiles computed by the device in this frame.
+     */
+    synchronized List<Tile> getTiles(int device) {
+        return new ArrayList<Tile>(tiles.get(device));
+    }
+
+    /**
+     * The summed kernel time of the device in this frame in ns.
+     */
+    synchronized long getBusyTime(int device) {
+        return busyTime[device];
+    }
+
+    /**
+     * A rectangular region of the image in pixels.
+     */
+    static class Tile {
+
+        final int x;
+        final int y;
+        final int width;
+        final int height;
+
+        Tile(int x, int y, int width, int height) {
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+        }
+
+        /**
+         * The overlapping part of both tiles or null.
+         */
+        Tile intersect(Tile other) {
+            int x0 = max(x, other.x);
+            int y0 = max(y, other.y);
+            int x1 = min(x + width, other.x + other.width);
+            int y1 = min(y + height, other.y + other.height);
+            return x0 < x1 && y0 < y1 ? new Tile(x0, y0, x1 - x0, y1 - y0) : null;
+        }
+    }
+
+}
@@ -6,6 +6,7 @@ import com.jogamp.opencl.CLContext;
 import com.jogamp.opencl.CLDevice;
 import com.jogamp.opencl.CLKernel;
 import com.jogamp.opencl.CLProgram;
+import com.jogamp.opencl.demos.benchmark.BenchmarkRunner;
 import java.io.IOException;
 import java.nio.FloatBuffer;
 import java.util.Random;
@@ -18,13 +19,21 @@ import static java.lang.Math.*;
  * Hello Java OpenCL example. Adds all elements of buffer A to buffer B
  * and stores the result in buffer C.<br/>
  * Sample was inspired by the Nvidia VectorAdd example written in C/C++
- * which is bundled in the Nvidia OpenCL SDK.
+ * which is bundled in the Nvidia OpenCL SDK.<br/>
+ * <code>--benchmark</code> runs the addition through the {@link BenchmarkRunner} instead.
  * @author Michael Bien
  */
 public class HelloJOCL {
 
     public static void main(String[] args) throws IOException {
 
+        if(BenchmarkRunner.isRequested(args)) {
+            BenchmarkRunner runner = BenchmarkRunner.create(args);
+            runner.checkArgs();
+            runner.run(new VectorAddWorkload(runner.getSize(VectorAddWorkload.DEFAULT_SIZE)));
+            return;
+        }
+
         // set up (uses default CLPlatform and creates context for all devices)
         CLContext context = CLContext.create();
         out.println("created "+context);
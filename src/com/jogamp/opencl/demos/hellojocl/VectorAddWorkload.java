@@ -0,0 +1,110 @@
+package com.jogamp.opencl.demos.hellojocl;
+
+import com.jogamp.opencl.CLBuffer;
+import com.jogamp.opencl.CLCommandQueue;
+import com.jogamp.opencl.CLContext;
+import com.jogamp.opencl.CLKernel;
+import com.jogamp.opencl.CLProgram;
+import com.jogamp.opencl.demos.benchmark.BenchmarkRunner;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+import static com.jogamp.opencl.CLMemory.Mem.*;
+
+/**
+ * The {@link HelloJOCL} vector addition as benchmark workload, timed like the demo:
+ * upload of both inputs, kernel and blocking read of the result.
+ */
+public class VectorAddWorkload implements BenchmarkRunner.Workload {
+
+    public static final int DEFAULT_SIZE = 1444477;
+
+    private final int elementCount;
+
+    private CLCommandQueue queue;
+    private CLProgram program;
+    private CLKernel kernel;
+    private CLBuffer<FloatBuffer> a;
+    private CLBuffer<FloatBuffer> b;
+    private CLBuffer<FloatBuffer> c;
+
+    private int localWorkSize;
+    private int globalWorkSize;
+
+    public VectorAddWorkload(int elementCount) {
+        this.elementCount = elementCount;
+    }
+
+    public String getName() {
+        return "vector_add";
+    }
+
+    public long getSize() {
+        return elementCount;
+    }
+
+    public void setup(CLCommandQueue queue) throws IOException {
+        this.queue = queue;
+        CLContext context = queue.getContext();
+
+        localWorkSize = Math.min(queue.getDevice().getMaxWorkGroupSize(), 256);
+        globalWorkSize = roundUp(localWorkSize, elementCount);
+
+        program = context.createProgram(getClass().getResourceAsStream("VectorAdd.cl")).build();
+
+        a = context.createFloatBuffer(globalWorkSize, READ_ONLY);
+        b = context.createFloatBuffer(globalWorkSize, READ_ONLY);
+        c = context.createFloatBuffer(globalWorkSize, WRITE_ONLY);
+        fillBuffer(a.getBuffer(), 12345);
+        fillBuffer(b.getBuffer(), 67890);
+
+        kernel = program.createCLKernel("VectorAdd");
+        kernel.putArgs(a, b, c).putArg(elementCount);
+    }
+
+    public void reset() {
+        // inputs are never modified
+    }
+
+    public void run() {
+        queue.putWriteBuffer(a, false)
+             .putWriteBuffer(b, false)
+             .put1DRangeKernel(kernel, 0, globalWorkSize, localWorkSize)
+             .putReadBuffer(c, true);
+    }
+
+    public void verify() {
+        FloatBuffer result = c.getBuffer();
+        for (int i = 0; i < elementCount; i++) {
+            float expected = a.getBuffer().get(i) + b.getBuffer().get(i);
+            if(result.get(i) != expected) {
+                throw new RuntimeException("mismatch at "+i+": "+result.get(i)+" != "+expected);
+            }
+        }
+    }
+
+    public void release() {
+        a.release();
+        b.release();
+        c.release();
+        program.release();
+    }
+
+    private static void fillBuffer(FloatBuffer buffer, int seed) {
+        Random rnd = new Random(seed);
+        while(buffer.remaining() != 0)
+            buffer.put(rnd.nextFloat()*100);
+        buffer.rewind();
+    }
+
+    private static int roundUp(int groupSize, int globalSize) {
+        int r = globalSize % groupSize;
+        if (r == 0) {
+            return globalSize;
+        } else {
+            return globalSize + groupSize - r;
+        }
+    }
+
+}
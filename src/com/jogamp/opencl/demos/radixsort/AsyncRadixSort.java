@@ -0,0 +1,217 @@
+package com.jogamp.opencl.demos.radixsort;
+
+import com.jogamp.opencl.CLBuffer;
+import com.jogamp.opencl.CLCommandQueue;
+import com.jogamp.opencl.CLEvent;
+import com.jogamp.opencl.CLEvent.ExecutionStatus;
+import com.jogamp.opencl.CLEventList;
+import com.jogamp.opencl.CLResource;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.jogamp.opencl.CLMemory.Mem.*;
+
+/**
+ * Non-blocking radix sort front end.
+ * <p>
+ * {@link #sort(IntBuffer, CLEventList)} enqueues upload, sort and read back without waiting and
+ * returns a future which is completed once the sorted keys arrived in the host buffer. Sorts
+ * are distributed round robin over the given queues, several sorts can be in flight at once.
+ * A single daemon thread polls the completion events, the submitting threads never block on the device.
+ * </p>
+ */
+public class AsyncRadixSort implements CLResource {
+
+    // poll interval of the completion thread while sorts are pending
+    private static final long POLL_INTERVAL_NS = 50000;
+
+    private final RadixSort[] sorters;
+    private final CLBuffer<IntBuffer>[] buffers;
+    private final int CTA_SIZE;
+
+    private final AtomicInteger next = new AtomicInteger();
+    private final LinkedBlockingQueue<PendingSort> submitted = new LinkedBlockingQueue<PendingSort>();
+    private final Thread completionThread;
+
+    private volatile boolean released;
+
+    /**
+     * Creates one {@link RadixSort} per queue. Queues may belong to different devices of the same context.
+     */
+    @SuppressWarnings("unchecked")
+    public AsyncRadixSort(CLCommandQueue[] queues, int maxElements, int CTA_SIZE) throws IOException {
+
+        this.CTA_SIZE = CTA_SIZE;
+        sorters = new RadixSort[queues.length];
+        buffers = new CLBuffer[queues.length];
+
+        for (int i = 0; i < queues.length; i++) {
+            sorters[i] = new RadixSort(queues[i], maxElements, CTA_SIZE);
+            buffers[i] = queues[i].getContext().createIntBuffer(maxElements, READ_WRITE);
+        }
+
+        completionThread = new Thread(new Runnable() {
+            @Override public void run() {
+                pollCompletions();
+            }
+        }, "radix sort completion");
+        completionThread.setDaemon(true);
+        completionThread.start();
+    }
+
+    /**
+     * Enqueues a sort of the given direct buffer which starts after all events in
+     * <code>condition</code> (may be null) completed. The keys are sorted in place.
+     * The number of keys is the capacity of the buffer.
+     */
+    public CompletableFuture<IntBuffer> sort(IntBuffer keys, CLEventList condition) {
+
+        if(released) {
+            throw new IllegalStateException("released");
+        }
+
+        int numElements = keys.capacity();
+        if(!RadixSort.isSupportedSize(numElements, CTA_SIZE)) {
+            throw new IllegalArgumentException("unsupported number of keys: "+numElements);
+        }
+
+        int slot = (next.getAndIncrement() & Integer.MAX_VALUE) % sorters.length;
+        RadixSort sorter = sorters[slot];
+        CLCommandQueue queue = sorter.getQueue();
+
+        CLEventList uploaded = new CLEventList(1);
+        CLEventList sorted = new CLEventList(1);
+        CLEventList events = new CLEventList(1);
+        CompletableFuture<IntBuffer> future = new CompletableFuture<IntBuffer>();
+
+        // the sorter's kernels and temp buffers are shared, enqueue atomically per slot.
+        // In order queues serialize sorts which end up in the same slot.
+        synchronized(sorter) {
+            if(released) {
+                throw new IllegalStateException("released");
+            }
+            if(numElements > buffers[slot].getCLCapacity()) {
+                throw new IllegalArgumentException(numElements+" keys exceed the maximum of "+buffers[slot].getCLCapacity());
+            }
+            CLBuffer<IntBuffer> buffer = buffers[slot].cloneWith(keys);
+            if(condition != null && condition.size() > 0) {
+                queue.putWriteBuffer(buffer, false, condition, uploaded);
+            }else{
+                queue.putWriteBuffer(buffer, false, uploaded);
+            }
+            sorter.sort(buffer, numElements, 32, uploaded, sorted);
+            queue.putReadBuffer(buffer, false, sorted, events);
+            queue.flush();
+
+            // registered while holding the lock, release() finds it after finishing the queue
+            submitted.add(new PendingSort(keys, future, uploaded, sorted, events));
+        }
+
+        return future;
+    }
+
+    private void pollCompletions() {
+
+        List<PendingSort> pending = new LinkedList<PendingSort>();
+
+        while(true) {
+
+            submitted.drainTo(pending);
+            if(pending.isEmpty()) {
+                if(released) {
+                    break;
+                }
+                try{
+                    pending.add(submitted.take());
+                }catch(InterruptedException ex) {
+                    // release() wakes us up, exit once nothing is pending
+                    continue;
+                }
+            }
+
+            Iterator<PendingSort> iterator = pending.iterator();
+            while(iterator.hasNext()) {
+                PendingSort sort = iterator.next();
+                CLEvent event = sort.events.getEvent(0);
+                ExecutionStatus status = event.getStatus();
+
+                if(status == ExecutionStatus.COMPLETE) {
+                    sort.release();
+                    iterator.remove();
+                    sort.future.complete(sort.keys);
+                }else if(status == ExecutionStatus.ERROR) {
+                    sort.release();
+                    iterator.remove();
+                    sort.future.completeExceptionally(new RuntimeException("sort failed on device"));
+                }
+            }
+
+            if(!pending.isEmpty()) {
+                LockSupport.parkNanos(POLL_INTERVAL_NS);
+            }
+        }
+    }
+
+    /**
+     * Rejects new sorts, waits until all sorts in flight completed their futures
+     * and releases the sorters and buffers.
+     */
+    public void release() {
+        released = true;
+        for (RadixSort sorter : sorters) {
+            synchronized(sorter) {
+                sorter.getQueue().finish();
+            }
+        }
+        completionThread.interrupt();
+        try{
+            completionThread.join();
+        }catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        for (int i = 0; i < sorters.length; i++) {
+            sorters[i].release();
+            buffers[i].release();
+        }
+    }
+
+    @Override
+    public boolean isReleased() {
+        return released;
+    }
+
+    public void close() {
+        release();
+    }
+
+    private static class PendingSort {
+
+        final IntBuffer keys;
+        final CompletableFuture<IntBuffer> future;
+        final CLEventList uploaded;
+        final CLEventList sorted;
+        final CLEventList events;
+
+        PendingSort(IntBuffer keys, CompletableFuture<IntBuffer> future, CLEventList uploaded, CLEventList sorted, CLEventList events) {
+            this.keys = keys;
+            this.future = future;
+            this.uploaded = uploaded;
+            this.sorted = sorted;
+            this.events = events;
+        }
+
+        void release() {
+            uploaded.release();
+            sorted.release();
+            events.release();
+        }
+    }
+
+}
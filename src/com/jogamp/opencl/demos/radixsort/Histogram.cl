@@ -0,0 +1,107 @@
+
+//----------------------------------------------------------------------------
+// General purpose histogram, a generalization of the per block radix counters
+// computed by findRadixOffsets in RadixSort.cl.
+//
+// Every work-group accumulates a private sub-histogram in local memory using
+// local atomics and merges it into the global histogram with one atomic add
+// per non-empty bin. If the bins do not fit into local memory, histogramGlobal
+// increments the global bins directly.
+//
+// Passed down by clBuildProgram:
+// FLOAT_DATA   float input, otherwise int
+//----------------------------------------------------------------------------
+
+#pragma OPENCL EXTENSION cl_khr_global_int32_base_atomics : enable
+#pragma OPENCL EXTENSION cl_khr_local_int32_base_atomics : enable
+
+#ifdef FLOAT_DATA
+    typedef float value_t;
+    typedef float step_t;   // bins per unit
+#else
+    typedef int   value_t;
+    typedef uint  step_t;   // values per bin
+#endif
+
+// returns 'bins' for values outside of the histogram range
+inline uint binOf(value_t value, value_t minValue, value_t maxValue, step_t step, uint bins)
+{
+#ifdef FLOAT_DATA
+    if(!(value >= minValue && value < maxValue))
+    {
+        return bins;
+    }
+    return min((uint)((value - minValue) * step), bins - 1);
+#else
+    if(value < minValue || value > maxValue)
+    {
+        return bins;
+    }
+    return min((uint)(value - minValue) / step, bins - 1);
+#endif
+}
+
+__kernel void clearHistogram(__global uint* histogram, uint bins)
+{
+    uint i = get_global_id(0);
+    if(i < bins)
+    {
+        histogram[i] = 0;
+    }
+}
+
+__kernel void histogramLocal(__global const value_t* data,
+                             uint n,
+                             value_t minValue,
+                             value_t maxValue,
+                             step_t step,
+                             uint bins,
+                             __global uint* histogram,
+                             __local uint* sHistogram)
+{
+    uint localId = get_local_id(0);
+    uint localSize = get_local_size(0);
+
+    for(uint i = localId; i < bins; i += localSize)
+    {
+        sHistogram[i] = 0;
+    }
+    barrier(CLK_LOCAL_MEM_FENCE);
+
+    for(uint i = get_global_id(0); i < n; i += get_global_size(0))
+    {
+        uint bin = binOf(data[i], minValue, maxValue, step, bins);
+        if(bin < bins)
+        {
+            atomic_inc(&sHistogram[bin]);
+        }
+    }
+    barrier(CLK_LOCAL_MEM_FENCE);
+
+    for(uint i = localId; i < bins; i += localSize)
+    {
+        uint count = sHistogram[i];
+        if(count != 0)
+        {
+            atomic_add(&histogram[i], count);
+        }
+    }
+}
+
+__kernel void histogramGlobal(__global const value_t* data,
+                              uint n,
+                              value_t minValue,
+                              value_t maxValue,
+                              step_t step,
+                              uint bins,
+                              __global uint* histogram)
+{
+    for(uint i = get_global_id(0); i < n; i += get_global_size(0))
+    {
+        uint bin = binOf(data[i], minValue, maxValue, step, bins);
+        if(bin < bins)
+        {
+            atomic_inc(&histogram[bin]);
+        }
+    }
+}
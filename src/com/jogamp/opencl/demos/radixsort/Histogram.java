@@ -0,0 +1,278 @@
+package com.jogamp.opencl.demos.radixsort;
+
+import com.jogamp.opencl.CLBuffer;
+import com.jogamp.opencl.CLCommandQueue;
+import com.jogamp.opencl.CLContext;
+import com.jogamp.opencl.CLDevice;
+import com.jogamp.opencl.CLKernel;
+import com.jogamp.opencl.CLProgram;
+import com.jogamp.opencl.CLResource;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import static com.jogamp.opencl.CLProgram.*;
+
+/**
+ * Histogram of int or float data with up to {@link #MAX_BINS} equally sized bins.
+ * <p>
+ * Work-groups accumulate privatized sub-histograms in local memory and merge them with
+ * atomics; if the bins do not fit into local memory the global histogram is updated directly.
+ * Values outside of the histogram range are ignored. The static <code>histogram</code> methods
+ * compute the same result on the host using fork/join.
+ * </p>
+ */
+public class Histogram implements CLResource {
+
+    public static final int MAX_BINS = 65536;
+
+    private static final int WORKGROUP_SIZE = 256;
+    private static final int GROUPS_PER_COMPUTE_UNIT = 4;
+
+    // elements processed sequentially by one fork/join task
+    private static final int HOST_THRESHOLD = 1 << 16;
+
+    private final int bins;
+    private final boolean floatData;
+    private final boolean privatized;
+
+    private final CLCommandQueue queue;
+    private final CLProgram program;
+    private final CLKernel ckClear;
+    private final CLKernel ckHistogram;
+
+    private final int localWorkSize;
+    private final int globalWorkSize;
+
+    /**
+     * Creates a histogram operation for the given queue.
+     * @param floatData true for float input data, false for int
+     */
+    public Histogram(CLCommandQueue queue, int bins, boolean floatData) throws IOException {
+
+        if(bins < 1 || bins > MAX_BINS) {
+            throw new IllegalArgumentException("bins must be in [1, "+MAX_BINS+"] but was "+bins);
+        }
+
+        this.queue = queue;
+        this.bins = bins;
+        this.floatData = floatData;
+
+        CLContext context = queue.getContext();
+        CLDevice device = queue.getDevice();
+
+        program = context.createProgram(getClass().getResourceAsStream("Histogram.cl"));
+        if(floatData) {
+            program.build(define("FLOAT_DATA"));
+        }else{
+            program.build();
+        }
+
+        // keep some local memory for the compiler
+        privatized = 4L * bins <= device.getLocalMemSize() - 1024;
+
+        ckClear     = program.createCLKernel("clearHistogram");
+        ckHistogram = program.createCLKernel(privatized ? "histogramLocal" : "histogramGlobal");
+
+        localWorkSize  = (int)Math.min(WORKGROUP_SIZE, ckHistogram.getWorkGroupSize(device));
+        globalWorkSize = localWorkSize * device.getMaxComputeUnits() * GROUPS_PER_COMPUTE_UNIT;
+    }
+
+    /**
+     * Enqueues the histogram of the first n values of data within [minValue, maxValue].
+     * Bins have a width of <code>ceil((maxValue - minValue + 1) / bins)</code>. Does not block.
+     */
+    public void histogram(CLBuffer<IntBuffer> data, int n, int minValue, int maxValue, CLBuffer<IntBuffer> histogram) {
+        if(floatData) {
+            throw new IllegalStateException("this histogram was built for float data");
+        }
+        checkCapacity(histogram);
+        ckHistogram.putArg(data).putArg(n).putArg(minValue).putArg(maxValue).putArg(binWidth(minValue, maxValue, bins));
+        enqueue(histogram);
+    }
+
+    /**
+     * Enqueues the histogram of the first n values of data over the range [minValue, maxValue).
+     * Does not block.
+     */
+    public void histogram(CLBuffer<FloatBuffer> data, int n, float minValue, float maxValue, CLBuffer<IntBuffer> histogram) {
+        if(!floatData) {
+            throw new IllegalStateException("this histogram was built for int data");
+        }
+        checkCapacity(histogram);
+        ckHistogram.putArg(data).putArg(n).putArg(minValue).putArg(maxValue).putArg(bins / (maxValue - minValue));
+        enqueue(histogram);
+    }
+
+    // validated before the first putArg, a throw must not leave the kernel args half set
+    private void checkCapacity(CLBuffer<IntBuffer> histogram) {
+        if(histogram.getCLCapacity() < bins) {
+            throw new IllegalArgumentException("histogram buffer too small");
+        }
+    }
+
+    private void enqueue(CLBuffer<IntBuffer> histogram) {
+
+        ckClear.putArg(histogram).putArg(bins).rewind();
+        queue.put1DRangeKernel(ckClear, 0, roundUp(bins, localWorkSize), 0);
+
+        ckHistogram.putArg(bins).putArg(histogram);
+        if(privatized) {
+            ckHistogram.putArgSize(4 * bins);
+        }
+        ckHistogram.rewind();
+
+        queue.put1DRangeKernel(ckHistogram, 0, globalWorkSize, localWorkSize);
+    }
+
+    /**
+     * Host fallback, same binning as {@link #histogram(CLBuffer, int, int, int, CLBuffer)}.
+     */
+    public static int[] histogram(int[] data, int minValue, int maxValue, int bins) {
+        return ForkJoinPool.commonPool().invoke(
+                new IntHistogramTask(data, 0, data.length, minValue, maxValue, binWidth(minValue, maxValue, bins), bins));
+    }
+
+    /**
+     * Host fallback, same binning as {@link #histogram(CLBuffer, int, float, float, CLBuffer)}.
+     */
+    public static int[] histogram(float[] data, float minValue, float maxValue, int bins) {
+        return ForkJoinPool.commonPool().invoke(
+                new FloatHistogramTask(data, 0, data.length, minValue, maxValue, bins / (maxValue - minValue), bins));
+    }
+
+    // values per bin as unsigned int
+    private static int binWidth(int minValue, int maxValue, int bins) {
+        long range = (long)maxValue - minValue + 1;
+        return (int)Math.min((range + bins - 1) / bins, 0xFFFFFFFFL);
+    }
+
+    private static int roundUp(int globalSize, int groupSize) {
+        int r = globalSize % groupSize;
+        return r == 0 ? globalSize : globalSize + groupSize - r;
+    }
+
+    public int getBins() {
+        return bins;
+    }
+
+    public boolean isPrivatized() {
+        return privatized;
+    }
+
+    public void release() {
+        program.release();
+    }
+
+    @Override
+    public boolean isReleased() {
+        return program.isReleased();
+    }
+
+    public void close() {
+        release();
+    }
+
+    private static abstract class HistogramTask extends RecursiveTask<int[]> {
+
+        final int from;
+        final int to;
+        final int bins;
+
+        HistogramTask(int from, int to, int bins) {
+            this.from = from;
+            this.to = to;
+            this.bins = bins;
+        }
+
+        @Override
+        protected int[] compute() {
+            if(to - from <= HOST_THRESHOLD) {
+                int[] histogram = new int[bins];
+                count(histogram);
+                return histogram;
+            }
+            int mid = (from + to) >>> 1;
+            HistogramTask left  = split(from, mid);
+            HistogramTask right = split(mid, to);
+            left.fork();
+            int[] histogram = right.compute();
+            int[] other = left.join();
+            for (int i = 0; i < bins; i++) {
+                histogram[i] += other[i];
+            }
+            return histogram;
+        }
+
+        abstract HistogramTask split(int from, int to);
+
+        abstract void count(int[] histogram);
+    }
+
+    private static class IntHistogramTask extends HistogramTask {
+
+        private final int[] data;
+        private final int minValue;
+        private final int maxValue;
+        private final int binWidth;
+
+        IntHistogramTask(int[] data, int from, int to, int minValue, int maxValue, int binWidth, int bins) {
+            super(from, to, bins);
+            this.data = data;
+            this.minValue = minValue;
+            this.maxValue = maxValue;
+            this.binWidth = binWidth;
+        }
+
+        @Override
+        HistogramTask split(int from, int to) {
+            return new IntHistogramTask(data, from, to, minValue, maxValue, binWidth, bins);
+        }
+
+        @Override
+        void count(int[] histogram) {
+            long width = binWidth & 0xFFFFFFFFL;
+            for (int i = from; i < to; i++) {
+                int value = data[i];
+                if(value >= minValue && value <= maxValue) {
+                    long bin = ((long)value - minValue) / width;
+                    histogram[(int)Math.min(bin, bins - 1)]++;
+                }
+            }
+        }
+    }
+
+    private static class FloatHistogramTask extends HistogramTask {
+
+        private final float[] data;
+        private final float minValue;
+        private final float maxValue;
+        private final float scale;
+
+        FloatHistogramTask(float[] data, int from, int to, float minValue, float maxValue, float scale, int bins) {
+            super(from, to, bins);
+            this.data = data;
+            this.minValue = minValue;
+            this.maxValue = maxValue;
+            this.scale = scale;
+        }
+
+        @Override
+        HistogramTask split(int from, int to) {
+            return new FloatHistogramTask(data, from, to, minValue, maxValue, scale, bins);
+        }
+
+        @Override
+        void count(int[] histogram) {
+            for (int i = from; i < to; i++) {
+                float value = data[i];
+                if(value >= minValue && value < maxValue) {
+                    histogram[Math.min((int)((value - minValue) * scale), bins - 1)]++;
+                }
+            }
+        }
+    }
+
+}
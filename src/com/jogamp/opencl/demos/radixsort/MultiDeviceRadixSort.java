@@ -0,0 +1,282 @@
+package com.jogamp.opencl.demos.radixsort;
+
+import com.jogamp.opencl.CLBuffer;
+import com.jogamp.opencl.CLCommandQueue;
+import com.jogamp.opencl.CLContext;
+import com.jogamp.opencl.CLDevice;
+import com.jogamp.opencl.CLResource;
+import com.jogamp.opencl.CLSubBuffer;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static com.jogamp.opencl.CLMemory.Mem.*;
+
+/**
+ * Data parallel sample sort using every device of a context.
+ * <p>
+ * The keys are partitioned on the host using splitters picked from a random sample.
+ * Each partition is sorted with a {@link RadixSort} on its own device queue, all devices
+ * work concurrently. Since the partitions are ranges of the key space, the merge step is a
+ * simple concatenation of the sorted partitions.<br/>
+ * Partition sizes are weighted by the compute capability of each device and padded to the
+ * next size the radix sort supports using the largest key which always sorts to the end.
+ * Keys equal to a splitter are spread over all partitions which may hold them, so heavily
+ * duplicated keys do not pile up on one device.
+ * </p>
+ * Keys are sorted as unsigned integers, like {@link RadixSort} does.
+ */
+public class MultiDeviceRadixSort implements CLResource {
+
+    // samples taken per device to pick the splitters
+    private static final int OVERSAMPLING = 64;
+    private static final int PADDING_KEY = 0xFFFFFFFF;
+
+    private final int minElements;
+    private final int maxElements;
+
+    private final CLCommandQueue[] queues;
+    private final RadixSort[] sorters;
+    private final CLBuffer<IntBuffer>[] buffers;
+    private final double[] weights;
+
+    private final Random random = new Random(42);
+
+    /**
+     * Creates a sorter using all devices of the given context.
+     * @param maxElements the maximum number of keys a single device has to sort.
+     */
+    @SuppressWarnings("unchecked")
+    public MultiDeviceRadixSort(CLContext context, int maxElements, int CTA_SIZE) throws IOException {
+
+        // the scan of the radix counters limits the number of elements to a power of two in this range
+        this.minElements = 256 * CTA_SIZE;
+        this.maxElements = nextPowerOf2(Math.max(maxElements, minElements));
+        if(this.maxElements > 32768 * CTA_SIZE) {
+            throw new IllegalArgumentException("max elements per device must be <= "+32768 * CTA_SIZE);
+        }
+
+        CLDevice[] devices = context.getDevices();
+        queues  = new CLCommandQueue[devices.length];
+        sorters = new RadixSort[devices.length];
+        buffers = new CLBuffer[devices.length];
+        weights = new double[devices.length];
+
+        double totalWeight = 0;
+        for (int i = 0; i < devices.length; i++) {
+            queues[i]  = devices[i].createCommandQueue();
+            sorters[i] = new RadixSort(queues[i], this.maxElements, CTA_SIZE);
+            buffers[i] = context.createIntBuffer(this.maxElements, READ_WRITE);
+            weights[i] = (double)devices[i].getMaxComputeUnits() * devices[i].getMaxClockFrequency();
+            totalWeight += weights[i];
+        }
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] /= totalWeight;
+        }
+    }
+
+    /**
+     * Sorts the keys in place. Blocks until all devices are done.
+     */
+    public void sort(int[] keys) {
+
+        int parts = queues.length;
+        if(keys.length > parts * maxElements) {
+            throw new IllegalArgumentException("can not sort more than "+parts * maxElements+" keys");
+        }
+        int[] splitters = pickSplitters(keys, parts);
+
+        // last partition which may hold a key equal to the splitter
+        int[] runEnd = new int[splitters.length];
+        for (int i = splitters.length - 1; i >= 0; i--) {
+            boolean run = i + 1 < splitters.length && splitters[i+1] == splitters[i];
+            runEnd[i] = run ? runEnd[i+1] : i + 1;
+        }
+
+        // histogram of partition sizes
+        int[] bucket = new int[keys.length];
+        int[] counts = new int[parts];
+        int spread = 0;
+        for (int i = 0; i < keys.length; i++) {
+            int b = findBucket(splitters, keys[i]);
+            if(b < splitters.length && splitters[b] == keys[i]) {
+                // equal keys are interchangeable, the concatenation stays sorted
+                b += spread++ % (runEnd[b] - b + 1);
+            }
+            bucket[i] = b;
+            counts[b]++;
+        }
+
+        for (int i = 0; i < parts; i++) {
+            if(counts[i] > maxElements) {
+                // the sample missed the distribution of the keys
+                sortSingle(keys);
+                return;
+            }
+        }
+
+        int[] offsets = new int[parts];
+        for (int i = 1; i < parts; i++) {
+            offsets[i] = offsets[i-1] + counts[i-1];
+        }
+
+        int[] sizes = new int[parts];
+        for (int i = 0; i < parts; i++) {
+            sizes[i] = Math.max(nextPowerOf2(counts[i]), minElements);
+        }
+
+        // scatter into the per device buffers
+        int[] positions = new int[parts];
+        for (int i = 0; i < keys.length; i++) {
+            int b = bucket[i];
+            buffers[b].getBuffer().put(positions[b]++, keys[i]);
+        }
+        for (int i = 0; i < parts; i++) {
+            IntBuffer buffer = buffers[i].getBuffer();
+            for (int n = counts[i]; n < sizes[i]; n++) {
+                buffer.put(n, PADDING_KEY);
+            }
+        }
+
+        // sort all partitions concurrently, only the used part of each buffer is transferred
+        @SuppressWarnings("unchecked")
+        CLSubBuffer<IntBuffer>[] partitions = new CLSubBuffer[parts];
+        for (int i = 0; i < parts; i++) {
+            if(counts[i] == 0) {
+                continue;
+            }
+            partitions[i] = buffers[i].createSubBuffer(0, sizes[i], READ_WRITE);
+            queues[i].putWriteBuffer(partitions[i], false);
+            sorters[i].sort(partitions[i], sizes[i], 32);
+            queues[i].putReadBuffer(partitions[i], false);
+            queues[i].flush();
+        }
+
+        // concatenate
+        for (int i = 0; i < parts; i++) {
+            if(counts[i] == 0) {
+                continue;
+            }
+            queues[i].finish();
+            partitions[i].release();
+            IntBuffer buffer = buffers[i].getBuffer();
+            buffer.position(0).limit(counts[i]);
+            buffer.get(keys, offsets[i], counts[i]);
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Sorts all keys on the fastest device, or on the host if they do not fit.
+     */
+    private void sortSingle(int[] keys) {
+
+        if(keys.length > maxElements) {
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] ^= Integer.MIN_VALUE;
+            }
+            Arrays.sort(keys);
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] ^= Integer.MIN_VALUE;
+            }
+            return;
+        }
+
+        int fastest = 0;
+        for (int i = 1; i < weights.length; i++) {
+            if(weights[i] > weights[fastest]) {
+                fastest = i;
+            }
+        }
+
+        int size = Math.max(nextPowerOf2(keys.length), minElements);
+        IntBuffer buffer = buffers[fastest].getBuffer();
+        buffer.put(keys);
+        while(buffer.position() < size) {
+            buffer.put(PADDING_KEY);
+        }
+        buffer.rewind();
+
+        CLSubBuffer<IntBuffer> partition = buffers[fastest].createSubBuffer(0, size, READ_WRITE);
+        queues[fastest].putWriteBuffer(partition, false);
+        sorters[fastest].sort(partition, size, 32);
+        queues[fastest].putReadBuffer(partition, true);
+        partition.release();
+
+        buffer.get(keys);
+        buffer.clear();
+    }
+
+    /**
+     * Picks parts-1 splitters from a sorted random sample. The quantiles are weighted
+     * so that faster devices get larger partitions.
+     */
+    private int[] pickSplitters(int[] keys, int parts) {
+
+        int[] splitters = new int[parts - 1];
+        if(keys.length == 0 || parts == 1) {
+            return splitters;
+        }
+
+        // sample in unsigned order
+        int[] sample = new int[OVERSAMPLING * parts];
+        for (int i = 0; i < sample.length; i++) {
+            sample[i] = keys[random.nextInt(keys.length)] ^ Integer.MIN_VALUE;
+        }
+        Arrays.sort(sample);
+
+        double quantile = 0;
+        for (int i = 0; i < splitters.length; i++) {
+            quantile += weights[i];
+            int index = Math.min((int)(quantile * sample.length), sample.length - 1);
+            splitters[i] = sample[index] ^ Integer.MIN_VALUE;
+        }
+        return splitters;
+    }
+
+    /**
+     * Returns the index of the first splitter which is greater or equal the key (unsigned).
+     */
+    private static int findBucket(int[] splitters, int key) {
+        int low = 0;
+        int high = splitters.length;
+        int k = key ^ Integer.MIN_VALUE;
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if((splitters[mid] ^ Integer.MIN_VALUE) < k) {
+                low = mid + 1;
+            }else{
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int nextPowerOf2(int x) {
+        int n = Integer.highestOneBit(Math.max(x, 1));
+        return n == x ? n : n << 1;
+    }
+
+    public int getDeviceCount() {
+        return queues.length;
+    }
+
+    public void release() {
+        for (int i = 0; i < queues.length; i++) {
+            sorters[i].release();
+            buffers[i].release();
+            queues[i].release();
+        }
+    }
+
+    @Override
+    public boolean isReleased() {
+        return queues[0].isReleased();
+    }
+
+    public void close() {
+        release();
+    }
+
+}
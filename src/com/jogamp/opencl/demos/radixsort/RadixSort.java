@@ -7,6 +7,7 @@ package com.jogamp.opencl.demos.radixsort;
 import com.jogamp.opencl.CLBuffer;
 import com.jogamp.opencl.CLCommandQueue;
 import com.jogamp.opencl.CLContext;
+import com.jogamp.opencl.CLEventList;
 import com.jogamp.opencl.CLKernel;
 import com.jogamp.opencl.CLProgram;
 import com.jogamp.opencl.CLResource;
@@ -71,10 +72,41 @@ public class RadixSort implements CLResource {
 
     }
 
-    void sort(CLBuffer<IntBuffer> d_keys, int numElements, int keyBits) {
+    /**
+     * Enqueues a key-only sort of the first <code>numElements</code> keys of <code>d_keys</code>.
+     * The keys are sorted in place; this method does not block.
+     */
+    public void sort(CLBuffer<IntBuffer> d_keys, int numElements, int keyBits) {
         radixSortKeysOnly(d_keys, numElements, keyBits);
     }
 
+    /**
+     * Enqueues a key-only sort which starts after all events in <code>condition</code> completed.
+     * A marker event signaling completion of the sort is added to <code>events</code>.
+     * Both lists may be null. This method does not block.
+     */
+    public void sort(CLBuffer<IntBuffer> d_keys, int numElements, int keyBits, CLEventList condition, CLEventList events) {
+        if(condition != null && condition.size() > 0) {
+            queue.putWaitForEvents(condition, false);
+        }
+        radixSortKeysOnly(d_keys, numElements, keyBits);
+        if(events != null) {
+            queue.putMarker(events);
+        }
+    }
+
+    /**
+     * Returns true if this sort can handle exactly <code>numElements</code> keys.
+     */
+    public static boolean isSupportedSize(int numElements, int CTA_SIZE) {
+        int counters = numElements / 2 / CTA_SIZE * 16;
+        return Scan.isPowerOf2(numElements) && counters >= 2048 && counters <= 262144;
+    }
+
+    public CLCommandQueue getQueue() {
+        return queue;
+    }
+
     //----------------------------------------------------------------------------
     // Main key-only radix sort function.  Sorts in place in the keys and values
     // arrays, but uses the other device arrays as temporary storage.  All pointer
@@ -8,6 +8,7 @@ import com.jogamp.opencl.CLBuffer;
 import com.jogamp.opencl.CLCommandQueue;
 import com.jogamp.opencl.CLContext;
 import com.jogamp.opencl.CLPlatform;
+import com.jogamp.opencl.demos.benchmark.BenchmarkRunner;
 import com.jogamp.opencl.util.CLPlatformFilters;
 import java.io.IOException;
 import java.nio.IntBuffer;
@@ -19,6 +20,7 @@ import static com.jogamp.opencl.CLDevice.Type.*;
 
 /**
  * GPU radix sort demo.
+ * <code>--benchmark</code> runs the sort through the {@link BenchmarkRunner} instead.
  * @author Michael Bien
  */
 public class RadixSortDemo {
@@ -106,6 +108,45 @@ public class RadixSortDemo {
 
     }
 
+    /**
+     * Sorts with every device of the default platform at once.
+     */
+    private static void multiDeviceDemo() throws IOException {
+
+        CLContext context = CLContext.create();
+        try{
+            int maxValue = Integer.MAX_VALUE;
+            int samples  = 10;
+            int elements = 8388608;
+
+            out.println(context);
+
+            MultiDeviceRadixSort radixSort = new MultiDeviceRadixSort(context, elements, 256);
+            out.println("sorting "+elements/1000+"K elements on "+radixSort.getDeviceCount()+" device(s)");
+
+            Random random = new Random(42);
+            int[] keys = new int[elements];
+
+            for(int a = 0; a < samples; a++) {
+                for (int n = 0; n < keys.length; n++) {
+                    keys[n] = random.nextInt(maxValue);
+                }
+
+                long time = nanoTime();
+                radixSort.sort(keys);
+                out.println("time: " + (nanoTime() - time)/1000000.0f+"ms");
+            }
+
+            out.println("validating...");
+            checkIfSorted(IntBuffer.wrap(keys));
+            out.println("values sorted");
+
+            radixSort.release();
+        }finally{
+            context.release();
+        }
+    }
+
     private void fillBuffer(CLBuffer<IntBuffer> array, int maxValue) {
         Random random = new Random(42);
         for (int n = 0; n < array.getBuffer().capacity(); n++) {
@@ -121,7 +162,7 @@ public class RadixSortDemo {
         buffer.rewind();
     }
 
-    private void checkIfSorted(IntBuffer keys) {
+    private static void checkIfSorted(IntBuffer keys) {
         for (int i = 1; i < keys.capacity(); i++) {
             if (keys.get(i - 1) > keys.get(i)) {
                 throw new RuntimeException("not sorted "+ keys.get(i - 1) +" !> "+ keys.get(i));
@@ -130,6 +171,14 @@ public class RadixSortDemo {
     }
 
     public static void main(String[] args) throws IOException {
-        new RadixSortDemo();
+        if(BenchmarkRunner.isRequested(args)) {
+            BenchmarkRunner runner = BenchmarkRunner.create(args);
+            runner.checkArgs();
+            runner.run(new RadixSortWorkload(runner.getSize(RadixSortWorkload.DEFAULT_SIZE)));
+        }else if(args.length > 0 && args[0].equals("--multi-device")) {
+            multiDeviceDemo();
+        }else{
+            new RadixSortDemo();
+        }
     }
 }
@@ -0,0 +1,93 @@
+package com.jogamp.opencl.demos.radixsort;
+
+import com.jogamp.opencl.CLBuffer;
+import com.jogamp.opencl.CLCommandQueue;
+import com.jogamp.opencl.demos.benchmark.BenchmarkRunner;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.util.Random;
+
+import static com.jogamp.opencl.CLMemory.Mem.*;
+
+/**
+ * {@link RadixSort} of 32bit keys as benchmark workload. The keys are uploaded before every
+ * run, only the sort is timed.
+ */
+public class RadixSortWorkload implements BenchmarkRunner.Workload {
+
+    public static final int DEFAULT_SIZE = 1048576;
+    private static final int CTA_SIZE = 256;
+
+    private final String name;
+    private final int size;
+    private final int[] data;
+
+    private CLCommandQueue queue;
+    private CLBuffer<IntBuffer> keys;
+    private RadixSort radixSort;
+
+    public RadixSortWorkload(int size) {
+        this("radix_sort", random(size));
+    }
+
+    /**
+     * Sorts a copy of the given keys, the name identifies the input in the results.
+     */
+    public RadixSortWorkload(String name, int[] data) {
+        this.name = name;
+        this.size = data.length;
+        this.data = data;
+    }
+
+    private static int[] random(int size) {
+        int[] data = new int[size];
+        Random random = new Random(42);
+        for (int i = 0; i < size; i++) {
+            data[i] = random.nextInt(Integer.MAX_VALUE);
+        }
+        return data;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setup(CLCommandQueue queue) throws IOException {
+        if(!RadixSort.isSupportedSize(size, CTA_SIZE)) {
+            throw new BenchmarkRunner.UnsupportedSizeException("unsupported size "+size);
+        }
+        this.queue = queue;
+        keys = queue.getContext().createIntBuffer(size, READ_WRITE);
+        radixSort = new RadixSort(queue, size, CTA_SIZE);
+    }
+
+    public void reset() {
+        keys.getBuffer().put(data).rewind();
+        queue.putWriteBuffer(keys, true);
+    }
+
+    public void run() {
+        radixSort.sort(keys, size, 32);
+        queue.finish();
+    }
+
+    public void verify() {
+        queue.putReadBuffer(keys, true);
+        IntBuffer sorted = keys.getBuffer();
+        for (int i = 1; i < size; i++) {
+            if (sorted.get(i - 1) > sorted.get(i)) {
+                throw new RuntimeException("not sorted "+ sorted.get(i - 1) +" !> "+ sorted.get(i));
+            }
+        }
+    }
+
+    public void release() {
+        radixSort.release();
+        keys.release();
+    }
+
+}
@@ -54,7 +54,7 @@ public class Scan implements CLResource {
     }
 
     // main exclusive scan routine
-    void scanExclusiveLarge(CLBuffer<?> dst, CLBuffer<?> src, int batchSize, int arrayLength) {
+    public void scanExclusiveLarge(CLBuffer<?> dst, CLBuffer<?> src, int batchSize, int arrayLength) {
 
         //Check power-of-two factorization
         if(!isPowerOf2(arrayLength)) {
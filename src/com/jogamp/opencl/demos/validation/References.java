@@ -0,0 +1,248 @@
+package com.jogamp.opencl.demos.validation;
+
+import java.util.Arrays;
+
+/**
+ * Pure Java reference implementations of the compute paths used in the demos.
+ * Everything here is deliberately simple and sequential, the point is to be obviously correct.
+ */
+public class References {
+
+    private References() {
+    }
+
+    /**
+     * Sorts a copy of the keys, interpreting them as unsigned integers like the sort kernels do.
+     */
+    public static int[] sortUnsigned(int[] keys) {
+        int[] sorted = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            sorted[i] = keys[i] ^ Integer.MIN_VALUE;
+        }
+        Arrays.sort(sorted);
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] ^= Integer.MIN_VALUE;
+        }
+        return sorted;
+    }
+
+    /**
+     * Exclusive prefix sum of every <code>arrayLength</code> sized segment of the input.
+     */
+    public static int[] scanExclusive(int[] src, int arrayLength) {
+        int[] dst = new int[src.length];
+        for (int offset = 0; offset < src.length; offset += arrayLength) {
+            int sum = 0;
+            for (int i = offset; i < offset + arrayLength; i++) {
+                dst[i] = sum;
+                sum += src[i];
+            }
+        }
+        return dst;
+    }
+
+    /**
+     * Histogram of the values within [minValue, maxValue] with bins of width
+     * <code>ceil((maxValue - minValue + 1) / bins)</code>.
+     */
+    public static int[] histogram(int[] data, int minValue, int maxValue, int bins) {
+        long width = ((long)maxValue - minValue + bins) / bins;
+        int[] histogram = new int[bins];
+        for (int value : data) {
+            if(value >= minValue && value <= maxValue) {
+                histogram[(int)(((long)value - minValue) / width)]++;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Histogram over [minValue, maxValue) with equally sized bins.
+     */
+    public static int[] histogram(float[] data, float minValue, float maxValue, int bins) {
+        float scale = bins / (maxValue - minValue);
+        int[] histogram = new int[bins];
+        for (float value : data) {
+            if(value >= minValue && value < maxValue) {
+                histogram[Math.min((int)((value - minValue) * scale), bins - 1)]++;
+            }
+        }
+        return histogram;
+    }
+
+    public static float[] vectorAdd(float[] a, float[] b) {
+        float[] c = new float[a.length];
+        for (int i = 0; i < c.length; i++) {
+            c[i] = a[i] + b[i];
+        }
+        return c;
+    }
+
+    /**
+     * Gamma correction as computed by <code>Gamma.cl</code>.
+     */
+    public static float[] gamma(float[] image, float gamma, float scale) {
+        float[] result = new float[image.length];
+        for (int i = 0; i < image.length; i++) {
+            result[i] = (float)(Math.pow(image[i], gamma) * scale);
+        }
+        return result;
+    }
+
+    /**
+     * Iteration count of every pixel, computed like the <code>mandelbrot</code> kernel
+     * of <code>Mandelbrot.cl</code> with 32bit floating point precision.
+     */
+    public static int[] mandelbrot(int width, int height, float x0, float y0, float rangeX, float rangeY, int maxIterations) {
+        int[] iterations = new int[width * height];
+        for (int iy = 0; iy < height; iy++) {
+            for (int ix = 0; ix < width; ix++) {
+                float r = x0 + ix * rangeX / width;
+                float i = y0 + iy * rangeY / height;
+
+                float x = 0;
+                float y = 0;
+                float magnitudeSquared = 0;
+                int iteration = 0;
+
+                while (magnitudeSquared < 4 && iteration < maxIterations) {
+                    float x2 = x*x;
+                    float y2 = y*y;
+                    y = 2 * x * y + i;
+                    x = x2 - y2 + r;
+                    magnitudeSquared = x2+y2;
+                    iteration++;
+                }
+                iterations[iy * width + ix] = iteration;
+            }
+        }
+        return iterations;
+    }
+
+    /**
+     * Iteration count of every pixel with 64bit floating point precision, the reference
+     * for the <code>mandelbrotDS</code> kernel at ranges float can not resolve.
+     */
+    public static int[] mandelbrot(int width, int height, double x0, double y0, double rangeX, double rangeY, int maxIterations) {
+        int[] iterations = new int[width * height];
+        for (int iy = 0; iy < height; iy++) {
+            for (int ix = 0; ix < width; ix++) {
+                double r = x0 + ix * (rangeX / width);
+                double i = y0 + iy * (rangeY / height);
+
+                double x = 0;
+                double y = 0;
+                double magnitudeSquared = 0;
+                int iteration = 0;
+
+                while (magnitudeSquared < 4 && iteration < maxIterations) {
+                    double x2 = x*x;
+                    double y2 = y*y;
+                    y = 2 * x * y + i;
+                    x = x2 - y2 + r;
+                    magnitudeSquared = x2+y2;
+                    iteration++;
+                }
+                iterations[iy * width + ix] = iteration;
+            }
+        }
+        return iterations;
+    }
+
+    /**
+     * Maps iteration counts to color map indices the same way the <code>mandelbrot</code> kernel does.
+     * Points inside the set map to -1.
+     */
+    public static int[] mandelbrotColorIndices(int[] iterations, int colorMapSize, int maxIterations) {
+        int[] indices = new int[iterations.length];
+        for (int i = 0; i < iterations.length; i++) {
+            if(iterations[i] == maxIterations) {
+                indices[i] = -1;
+            }else{
+                float alpha = (float)iterations[i] / maxIterations;
+                indices[i] = (int)(alpha * colorMapSize);
+            }
+        }
+        return indices;
+    }
+
+    /**
+     * Unnormalized multidimensional complex FFT of interleaved (re, im) data, x being the fastest
+     * running dimension. <code>sign</code> is -1 for the forward and 1 for the inverse transform
+     * (matching <code>CLFFTPlan.CLFFTDirection</code>).
+     */
+    public static double[] fft(float[] interleaved, int[] sizes, int sign) {
+
+        double[] data = new double[interleaved.length];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = interleaved[i];
+        }
+
+        int stride = 1;
+        int total = interleaved.length / 2;
+        for (int dim = 0; dim < sizes.length; dim++) {
+            int n = sizes[dim];
+            double[] re = new double[n];
+            double[] im = new double[n];
+            // every line along this dimension
+            for (int base = 0; base < total; base++) {
+                if((base / stride) % n != 0) {
+                    continue;
+                }
+                for (int k = 0; k < n; k++) {
+                    int index = base + k * stride;
+                    re[k] = data[2 * index];
+                    im[k] = data[2 * index + 1];
+                }
+                fft1D(re, im, sign);
+                for (int k = 0; k < n; k++) {
+                    int index = base + k * stride;
+                    data[2 * index]     = re[k];
+                    data[2 * index + 1] = im[k];
+                }
+            }
+            stride *= n;
+        }
+        return data;
+    }
+
+    /**
+     * In place iterative radix-2 FFT. n must be a power of two.
+     */
+    private static void fft1D(double[] re, double[] im, int sign) {
+
+        int n = re.length;
+
+        // bit reversal permutation
+        for (int i = 1, j = 0; i < n; i++) {
+            int bit = n >> 1;
+            for (; (j & bit) != 0; bit >>= 1) {
+                j ^= bit;
+            }
+            j ^= bit;
+            if(i < j) {
+                double t = re[i]; re[i] = re[j]; re[j] = t;
+                t = im[i]; im[i] = im[j]; im[j] = t;
+            }
+        }
+
+        for (int length = 2; length <= n; length <<= 1) {
+            double angle = sign * 2 * Math.PI / length;
+            for (int i = 0; i < n; i += length) {
+                for (int k = 0; k < length / 2; k++) {
+                    double wr = Math.cos(angle * k);
+                    double wi = Math.sin(angle * k);
+                    int a = i + k;
+                    int b = i + k + length / 2;
+                    double tr = re[b] * wr - im[b] * wi;
+                    double ti = re[b] * wi + im[b] * wr;
+                    re[b] = re[a] - tr;
+                    im[b] = im[a] - ti;
+                    re[a] += tr;
+                    im[a] += ti;
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,637 @@
+package com.jogamp.opencl.demos.validation;
+
+import com.jogamp.common.nio.Buffers;
+import com.jogamp.opencl.CLBuffer;
+import com.jogamp.opencl.CLCommandQueue;
+import com.jogamp.opencl.CLContext;
+import com.jogamp.opencl.CLDevice;
+import com.jogamp.opencl.CLKernel;
+import com.jogamp.opencl.CLPlatform;
+import com.jogamp.opencl.CLProgram;
+import com.jogamp.opencl.demos.bitonicsort.BitonicSort;
+import com.jogamp.opencl.demos.fft.CLFFTPlan;
+import com.jogamp.opencl.demos.radixsort.AsyncRadixSort;
+import com.jogamp.opencl.demos.radixsort.Histogram;
+import com.jogamp.opencl.demos.radixsort.MultiDeviceRadixSort;
+import com.jogamp.opencl.demos.radixsort.RadixSort;
+import com.jogamp.opencl.demos.radixsort.Scan;
+import java.io.InputStream;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.System.*;
+import static com.jogamp.opencl.CLMemory.Mem.*;
+import static com.jogamp.opencl.CLProgram.*;
+import static com.jogamp.opencl.CLProgram.CompilerOptions.*;
+
+/**
+ * Headless correctness harness. Runs every compute path of the demos on each available
+ * OpenCL device (GPUs as well as CPU runtimes) and compares the results against the pure Java
+ * implementations in {@link References}. Floating point results are compared with tolerances.
+ * <p>
+ * args:<br/>
+ * --platform=0 --device=0 restrict the run to one platform or device<br/>
+ * --checks=RADIX_SORT,SCAN,... run only the listed checks<br/>
+ * </p>
+ * The process exits with status 1 if any check failed.
+ */
+public class ValidationHarness {
+
+    private static final long SEED = 42;
+
+    public static void main(String[] args) {
+
+        int platformIndex = -1;
+        int deviceIndex = -1;
+        List<String> names = null;
+
+        for (String arg : args) {
+            if(arg.startsWith("--platform=")) {
+                platformIndex = Integer.parseInt(arg.substring(11));
+            }else if(arg.startsWith("--device=")) {
+                deviceIndex = Integer.parseInt(arg.substring(9));
+            }else if(arg.startsWith("--checks=")) {
+                names = Arrays.asList(arg.substring(9).toUpperCase().split(","));
+            }else{
+                out.println("unknown arg: "+arg);
+                exit(1);
+            }
+        }
+
+        List<Check> checks = new ArrayList<Check>();
+        for (Check check : createChecks()) {
+            if(names == null || names.contains(check.name)) {
+                checks.add(check);
+            }
+        }
+
+        CLPlatform[] platforms = CLPlatform.listCLPlatforms();
+        if(platformIndex != -1) {
+            platforms = new CLPlatform[] {platforms[platformIndex]};
+        }
+
+        int failed = 0;
+        int passed = 0;
+        int skipped = 0;
+
+        for (CLPlatform platform : platforms) {
+
+            CLDevice[] devices = platform.listCLDevices();
+            if(deviceIndex != -1) {
+                devices = new CLDevice[] {devices[deviceIndex]};
+            }
+
+            for (CLDevice device : devices) {
+
+                out.println();
+                out.println(platform);
+                out.println(device);
+
+                CLContext context = CLContext.create(device);
+                try{
+                    CLCommandQueue queue = device.createCommandQueue();
+
+                    for (Check check : checks) {
+                        if(!check.supports(device)) {
+                            out.printf("    %-14s SKIPPED (%s)\n", check.name, check.requirement);
+                            skipped++;
+                            continue;
+                        }
+                        try{
+                            check.run(queue);
+                            queue.finish();
+                            out.printf("    %-14s PASSED\n", check.name);
+                            passed++;
+                        }catch(Exception ex) {
+                            out.printf("    %-14s FAILED: %s\n", check.name, ex);
+                            failed++;
+                        }
+                    }
+                }finally{
+                    context.release();
+                }
+            }
+        }
+
+        out.println();
+        out.println("passed: "+passed+", failed: "+failed+", skipped: "+skipped);
+
+        if(failed > 0) {
+            exit(1);
+        }
+    }
+
+    static List<Check> createChecks() {
+
+        List<Check> checks = new ArrayList<Check>();
+
+        checks.add(new Check("VECTOR_ADD") {
+            @Override
+            void run(CLCommandQueue queue) throws Exception {
+                int elements = 100003;
+                float[] a = randomFloats(elements, 100, SEED);
+                float[] b = randomFloats(elements, 100, SEED+1);
+
+                CLContext context = queue.getContext();
+                CLProgram program = context.createProgram(getStreamFor("hellojocl/VectorAdd.cl")).build();
+                CLBuffer<FloatBuffer> bufferA = context.createFloatBuffer(elements, READ_ONLY);
+                CLBuffer<FloatBuffer> bufferB = context.createFloatBuffer(elements, READ_ONLY);
+                CLBuffer<FloatBuffer> bufferC = context.createFloatBuffer(elements, WRITE_ONLY);
+                bufferA.getBuffer().put(a).rewind();
+                bufferB.getBuffer().put(b).rewind();
+
+                CLKernel kernel = program.createCLKernel("VectorAdd");
+                kernel.putArgs(bufferA, bufferB, bufferC).putArg(elements);
+
+                queue.putWriteBuffer(bufferA, false)
+                     .putWriteBuffer(bufferB, false)
+                     .put1DRangeKernel(kernel, 0, elements, 0)
+                     .putReadBuffer(bufferC, true);
+
+                assertClose(References.vectorAdd(a, b), bufferC.getBuffer(), 0);
+
+                program.release();
+                bufferA.release();
+                bufferB.release();
+                bufferC.release();
+            }
+        });
+
+        checks.add(new Check("GAMMA") {
+            @Override
+            void run(CLCommandQueue queue) throws Exception {
+                int elements = 512*512*3;
+                float gamma = 1.5f;
+                float scale = (float) Math.pow(255, 1.0f-gamma);
+                float[] image = randomFloats(elements, 255, SEED);
+
+                CLContext context = queue.getContext();
+                CLProgram program = context.createProgram(getStreamFor("gamma/Gamma.cl"))
+                                           .build(FAST_RELAXED_MATH);
+                CLBuffer<FloatBuffer> buffer = context.createFloatBuffer(elements, READ_WRITE);
+                buffer.getBuffer().put(image).rewind();
+
+                CLKernel kernel = program.createCLKernel("gamma");
+                kernel.putArg(buffer).putArg(gamma).putArg(scale).putArg(elements);
+
+                queue.putWriteBuffer(buffer, false)
+                     .put1DRangeKernel(kernel, 0, elements, 0)
+                     .putReadBuffer(buffer, true);
+
+                // relaxed math pow
+                assertClose(References.gamma(image, gamma, scale), buffer.getBuffer(), 1e-3f);
+
+                program.release();
+                buffer.release();
+            }
+        });
+
+        checks.add(new Check("SCAN") {
+            @Override
+            void run(CLCommandQueue queue) throws Exception {
+                int arrayLength = 4 * 256 * 256;
+                int batch = 4;
+                int elements = batch * arrayLength;
+                int[] data = randomInts(elements, 1024, SEED);
+
+                CLContext context = queue.getContext();
+                CLBuffer<IntBuffer> src = context.createIntBuffer(elements, READ_ONLY);
+                CLBuffer<IntBuffer> dst = context.createIntBuffer(elements, WRITE_ONLY);
+                src.getBuffer().put(data).rewind();
+
+                Scan scan = new Scan(queue, elements);
+                queue.putWriteBuffer(src, false);
+                scan.scanExclusiveLarge(dst, src, batch, arrayLength);
+                queue.putReadBuffer(dst, true);
+
+                assertEquals(References.scanExclusive(data, arrayLength), dst.getBuffer());
+
+                scan.release();
+                src.release();
+                dst.release();
+            }
+        });
+
+        checks.add(new Check("RADIX_SORT", 128, "work group size >= 128") {
+            @Override
+            void run(CLCommandQueue queue) throws Exception {
+                int elements = 262144;
+                int[] data = randomInts(elements, Integer.MAX_VALUE, SEED);
+
+                CLBuffer<IntBuffer> keys = queue.getContext().createIntBuffer(elements, READ_WRITE);
+                keys.getBuffer().put(data).rewind();
+
+                RadixSort radixSort = new RadixSort(queue, elements, 128);
+                queue.putWriteBuffer(keys, false);
+                radixSort.sort(keys, elements, 32);
+                queue.putReadBuffer(keys, true);
+
+                assertEquals(References.sortUnsigned(data), keys.getBuffer());
+
+                radixSort.release();
+                keys.release();
+            }
+        });
+
+        checks.add(new Check("SAMPLE_SORT", 128, "work group size >= 128") {
+            @Override
+            void run(CLCommandQueue queue) throws Exception {
+                int elements = 300000;
+                int[] data = randomInts(elements, Integer.MAX_VALUE, SEED);
+                int[] keys = data.clone();
+
+                MultiDeviceRadixSort radixSort = new MultiDeviceRadixSort(queue.getContext(), elements, 128);
+                radixSort.sort(keys);
+
+                assertEquals(References.sortUnsigned(data), IntBuffer.wrap(keys));
+
+                radixSort.release();
+            }
+        });
+
+        checks.add(new Check("ASYNC_SORT", 128, "work group size >= 128") {
+            @Override
+            void run(CLCommandQueue queue) throws Exception {
+                int elements = 65536;
+                int sorts = 4;
+
+                AsyncRadixSort radixSort = new AsyncRadixSort(new CLCommandQueue[] {queue}, elements, 128);
+
+                int[][] data = new int[sorts][];
+                List<Future<IntBuffer>> futures = new ArrayList<Future<IntBuffer>>();
+                for (int i = 0; i < sorts; i++) {
+                    data[i] = randomInts(elements, Integer.MAX_VALUE, SEED+i);
+                    IntBuffer keys = Buffers.newDirectIntBuffer(elements);
+                    keys.put(data[i]).rewind();
+                    futures.add(radixSort.sort(keys, null));
+                }
+
+                for (int i = 0; i < sorts; i++) {
+                    assertEquals(References.sortUnsigned(data[i]), futures.get(i).get(10, TimeUnit.SECONDS));
+                }
+
+                radixSort.release();
+            }
+        });
+
+        checks.add(new Check("HISTOGRAM") {
+            @Override
+            void run(CLCommandQueue queue) throws Exception {
+                int elements = 1000000;
+                CLContext context = queue.getContext();
+                CLBuffer<IntBuffer> result = context.createIntBuffer(Histogram.MAX_BINS, READ_WRITE);
+
+                // int data, small (local memory) and large (global atomics) bin counts
+                int[] ints = randomInts(elements, 100000, SEED);
+                CLBuffer<IntBuffer> intData = context.createIntBuffer(elements, READ_ONLY);
+                intData.getBuffer().put(ints).rewind();
+                queue.putWriteBuffer(intData, false);
+
+                for (int bins : new int[] {16, 256, Histogram.MAX_BINS}) {
+                    int[] expected = References.histogram(ints, 1000, 90000, bins);
+
+                    Histogram histogram = new Histogram(queue, bins, false);
+                    histogram.histogram(intData, elements, 1000, 90000, result);
+                    queue.putReadBuffer(result, true);
+
+                    assertEquals(expected, result.getBuffer());
+                    assertEquals(expected, IntBuffer.wrap(Histogram.histogram(ints, 1000, 90000, bins)));
+                    histogram.release();
+                }
+
+                // float data
+                float[] floats = randomFloats(elements, 1, SEED);
+                CLBuffer<FloatBuffer> floatData = context.createFloatBuffer(elements, READ_ONLY);
+                floatData.getBuffer().put(floats).rewind();
+                queue.putWriteBuffer(floatData, false);
+
+                int[] expected = References.histogram(floats, 0.25f, 0.75f, 1000);
+
+                Histogram histogram = new Histogram(queue, 1000, true);
+                histogram.histogram(floatData, elements, 0.25f, 0.75f, result);
+                queue.putReadBuffer(result, true);
+
+                assertEquals(expected, result.getBuffer());
+                assertEquals(expected, IntBuffer.wrap(Histogram.histogram(floats, 0.25f, 0.75f, 1000)));
+
+                histogram.release();
+                intData.release();
+                floatData.release();
+                result.release();
+            }
+        });
+
+        checks.add(new Check("BITONIC_SORT", 512, "work group size >= 512") {
+            @Override
+            void run(CLCommandQueue queue) throws Exception {
+                int elements = 262144;
+                int[] data = randomInts(elements, Integer.MAX_VALUE, SEED);
+
+                CLBuffer<IntBuffer> keys = queue.getContext().createIntBuffer(elements, READ_WRITE);
+                keys.getBuffer().put(data).rewind();
+
+                BitonicSort bitonicSort = new BitonicSort(queue);
+                queue.putWriteBuffer(keys, false);
+                bitonicSort.bitonicSort(queue, keys, keys, 1, elements, 1);
+                queue.putReadBuffer(keys, true);
+
+                assertEquals(References.sortUnsigned(data), keys.getBuffer());
+
+                bitonicSort.release();
+                keys.release();
+            }
+        });
+
+        checks.add(new Check("MANDELBROT") {
+            @Override
+            void run(CLCommandQueue queue) throws Exception {
+                int width = 256;
+                int height = 256;
+                int maxIterations = 500;
+                int colorMapSize = 64;
+                float x0 = -2.0f, y0 = -1.2f, rangeX = 2.6f, rangeY = 2.5f;
+
+                CLContext context = queue.getContext();
+                CLBuffer<IntBuffer> output = context.createIntBuffer(width*height, WRITE_ONLY);
+                CLBuffer<IntBuffer> colorMap = createIdentityColorMap(context, colorMapSize);
+
+                int[] expected = References.mandelbrotColorIndices(
+                        References.mandelbrot(width, height, x0, y0, rangeX, rangeY, maxIterations), colorMapSize, maxIterations);
+
+                // EARLY_EXIT must not change the image, inside points get maxIterations either way
+                String[][] builds = {{}, {define("EARLY_EXIT")}};
+
+                for (String[] options : builds) {
+                    CLProgram program = context.createProgram(getStreamFor("fractal/Mandelbrot.cl")).build(options);
+
+                    CLKernel kernel = program.createCLKernel("mandelbrot");
+                    kernel.putArg(width).putArg(height)
+                          .putArg(x0).putArg(y0)
+                          .putArg(rangeX).putArg(rangeY)
+                          .putArg(output).putArg(colorMap)
+                          .putArg(colorMapSize).putArg(maxIterations);
+
+                    queue.putWriteBuffer(colorMap, false)
+                         .put2DRangeKernel(kernel, 0, 0, width, height, 0, 0)
+                         .putReadBuffer(output, true);
+
+                    program.release();
+
+                    assertMandelbrot(expected, output.getBuffer(), Arrays.toString(options));
+                }
+
+                output.release();
+                colorMap.release();
+            }
+        });
+
+        checks.add(new Check("MANDELBROT_VECTOR") {
+            @Override
+            void run(CLCommandQueue queue) throws Exception {
+                // odd width, the last work-item of a row has masked off lanes for every vector width
+                int width = 253;
+                int height = 128;
+                int maxIterations = 500;
+                int colorMapSize = 64;
+                float x0 = -2.0f, y0 = -1.2f, rangeX = 2.6f, rangeY = 2.5f;
+
+                CLContext context = queue.getContext();
+                CLBuffer<IntBuffer> output = context.createIntBuffer(width*height, WRITE_ONLY);
+                CLBuffer<IntBuffer> colorMap = createIdentityColorMap(context, colorMapSize);
+
+                int[] expected = References.mandelbrotColorIndices(
+                        References.mandelbrot(width, height, x0, y0, rangeX, rangeY, maxIterations), colorMapSize, maxIterations);
+
+                queue.putWriteBuffer(colorMap, false);
+
+                for (int vectorWidth : new int[] {2, 4, 8}) {
+                    CLProgram program = context.createProgram(getStreamFor("fractal/Mandelbrot.cl"))
+                                               .build(define("VECTOR_WIDTH", vectorWidth));
+
+                    CLKernel kernel = program.createCLKernel("mandelbrotVector");
+                    kernel.putArg(width).putArg(height)
+                          .putArg(x0).putArg(y0)
+                          .putArg(rangeX).putArg(rangeY)
+                          .putArg(output).putArg(colorMap)
+                          .putArg(colorMapSize).putArg(maxIterations)
+                          .putArg(0).putArg(width);
+
+                    // pixels of a previous width must not hide unwritten ones
+                    for (int i = 0; i < width*height; i++) {
+                        output.getBuffer().put(i, -1);
+                    }
+                    queue.putWriteBuffer(output, false)
+                         .put2DRangeKernel(kernel, 0, 0, (width + vectorWidth - 1) / vectorWidth, height, 0, 0)
+                         .putReadBuffer(output, true);
+
+                    program.release();
+
+                    assertMandelbrot(expected, output.getBuffer(), "VECTOR_WIDTH="+vectorWidth);
+                }
+
+                output.release();
+                colorMap.release();
+            }
+        });
+
+        checks.add(new Check("MANDELBROT_DS") {
+            @Override
+            void run(CLCommandQueue queue) throws Exception {
+                int width = 48;
+                int height = 48;
+                int maxIterations = 200;
+                int colorMapSize = 64;
+                // around a Misiurewicz point, structured at any zoom but not chaotic at the precision
+                // of double-single. Float can not tell the pixels of this view apart
+                double range = 1e-10;
+                double x0 = -0.1010963638456591 - range/2, y0 = 0.9562865108091415 - range/2;
+
+                CLContext context = queue.getContext();
+                // no relaxed math, it would optimize the error terms of the double-single arithmetic away
+                CLProgram program = context.createProgram(getStreamFor("fractal/Mandelbrot.cl")).build(define("DOUBLE_SINGLE"));
+                CLBuffer<IntBuffer> output = context.createIntBuffer(width*height, WRITE_ONLY);
+                CLBuffer<IntBuffer> colorMap = createIdentityColorMap(context, colorMapSize);
+
+                CLKernel kernel = program.createCLKernel("mandelbrotDS");
+                kernel.putArg(width).putArg(height)
+                      .putArg((float)x0).putArg((float)y0)
+                      .putArg((float)range).putArg((float)range)
+                      .putArg(output).putArg(colorMap)
+                      .putArg(colorMapSize).putArg(maxIterations)
+                      .putArg(lowPart(x0)).putArg(lowPart(y0))
+                      .putArg(lowPart(range)).putArg(lowPart(range));
+
+                queue.putWriteBuffer(colorMap, false)
+                     .put2DRangeKernel(kernel, 0, 0, width, height, 0, 0)
+                     .putReadBuffer(output, true);
+
+                int[] expected = References.mandelbrotColorIndices(
+                        References.mandelbrot(width, height, x0, y0, range, range, maxIterations), colorMapSize, maxIterations);
+
+                assertMandelbrot(expected, output.getBuffer(), "DOUBLE_SINGLE");
+
+                program.release();
+                output.release();
+                colorMap.release();
+            }
+        });
+
+        checks.add(new Check("FFT", CLDevice.Type.GPU, "CLFFTPlan requires a GPU") {
+            @Override
+            void run(CLCommandQueue queue) throws Exception {
+                int[] sizes = {128, 128};
+                int elements = 2 * sizes[0] * sizes[1];
+                float[] data = randomFloats(elements, 1, SEED);
+
+                CLContext context = queue.getContext();
+                CLBuffer<FloatBuffer> in = context.createFloatBuffer(elements, READ_ONLY);
+                CLBuffer<FloatBuffer> result = context.createFloatBuffer(elements, WRITE_ONLY);
+                in.getBuffer().put(data).rewind();
+
+                CLFFTPlan fft = new CLFFTPlan(context, sizes, CLFFTPlan.CLFFTDataFormat.InterleavedComplexFormat);
+                queue.putWriteBuffer(in, false);
+                fft.executeInterleaved(queue, 1, CLFFTPlan.CLFFTDirection.Forward, in, result, null, null);
+                queue.putReadBuffer(result, true);
+
+                double[] expected = References.fft(data, sizes, -1);
+                double max = 0;
+                for (double value : expected) {
+                    max = Math.max(max, Math.abs(value));
+                }
+                FloatBuffer actual = result.getBuffer();
+                for (int i = 0; i < expected.length; i++) {
+                    if(Math.abs(expected[i] - actual.get(i)) > 1e-4 * max) {
+                        throw new RuntimeException("value "+i+" differs: "+expected[i]+" != "+actual.get(i));
+                    }
+                }
+
+                fft.release();
+                in.release();
+                result.release();
+            }
+        });
+
+        return checks;
+    }
+
+    // kernel sources are loaded from the demo packages without touching the (GL dependent) demo classes
+    private static InputStream getStreamFor(String filename) {
+        return ValidationHarness.class.getResourceAsStream("/com/jogamp/opencl/demos/"+filename);
+    }
+
+    // the low part of a double-single value, value - (float)value
+    private static float lowPart(double value) {
+        return (float)(value - (float)value);
+    }
+
+    static float[] randomFloats(int count, float max, long seed) {
+        Random random = new Random(seed);
+        float[] values = new float[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = random.nextFloat() * max;
+        }
+        return values;
+    }
+
+    static int[] randomInts(int count, int max, long seed) {
+        Random random = new Random(seed);
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = random.nextInt(max);
+        }
+        return values;
+    }
+
+    /**
+     * Color map which maps every color index to index+1, the mandelbrot kernels write color
+     * indices with it (black, 0, for points inside the set).
+     */
+    static CLBuffer<IntBuffer> createIdentityColorMap(CLContext context, int colorMapSize) {
+        CLBuffer<IntBuffer> colorMap = context.createIntBuffer(colorMapSize+1, READ_ONLY);
+        for (int i = 0; i <= colorMapSize; i++) {
+            colorMap.getBuffer().put(i, i+1);
+        }
+        return colorMap;
+    }
+
+    /**
+     * Compares the output of a mandelbrot kernel, rendered with the identity color map, with the
+     * expected color indices. The iteration count is chaotic near the set boundary, a pixel may be
+     * one color index off and up to 1% of the pixels may diverge.
+     */
+    static void assertMandelbrot(int[] expected, IntBuffer actual, String variant) {
+        int mismatches = 0;
+        for (int i = 0; i < expected.length; i++) {
+            if(Math.abs(expected[i]+1 - actual.get(i)) > 1) {
+                mismatches++;
+            }
+        }
+        if(mismatches > expected.length / 100) {
+            throw new RuntimeException(variant+": "+mismatches+" of "+expected.length+" pixels differ");
+        }
+    }
+
+    static void assertEquals(int[] expected, IntBuffer actual) {
+        for (int i = 0; i < expected.length; i++) {
+            if(expected[i] != actual.get(i)) {
+                throw new RuntimeException("value "+i+" differs: "+expected[i]+" != "+actual.get(i));
+            }
+        }
+    }
+
+    /**
+     * Compares with a relative tolerance.
+     */
+    static void assertClose(float[] expected, FloatBuffer actual, float tolerance) {
+        for (int i = 0; i < expected.length; i++) {
+            float delta = Math.abs(expected[i] - actual.get(i));
+            if(delta > tolerance * Math.max(1, Math.abs(expected[i]))) {
+                throw new RuntimeException("value "+i+" differs: "+expected[i]+" != "+actual.get(i));
+            }
+        }
+    }
+
+    /**
+     * A single validation of one compute path.
+     */
+    static abstract class Check {
+
+        final String name;
+        final String requirement;
+        private final int minWorkGroupSize;
+        private final CLDevice.Type type;
+
+        Check(String name) {
+            this(name, 1, null, null);
+        }
+
+        Check(String name, int minWorkGroupSize, String requirement) {
+            this(name, minWorkGroupSize, null, requirement);
+        }
+
+        Check(String name, CLDevice.Type type, String requirement) {
+            this(name, 1, type, requirement);
+        }
+
+        private Check(String name, int minWorkGroupSize, CLDevice.Type type, String requirement) {
+            this.name = name;
+            this.minWorkGroupSize = minWorkGroupSize;
+            this.type = type;
+            this.requirement = requirement;
+        }
+
+        boolean supports(CLDevice device) {
+            return device.getMaxWorkGroupSize() >= minWorkGroupSize
+                && (type == null || device.getType() == type);
+        }
+
+        abstract void run(CLCommandQueue queue) throws Exception;
+    }
+
+}